@@ -0,0 +1,83 @@
+package eu.europa.ec.itb.validator.eark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitb.tr.TAR;
+import eu.europa.ec.itb.validator.eark.gitb.ValidationServiceImpl;
+import eu.europa.ec.itb.validator.eark.rest.ValidationController;
+import eu.europa.ec.itb.validator.eark.validation.UploadResult;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import eu.europa.ec.itb.validator.eark.validation.ValidationReport;
+import eu.europa.ec.itb.validator.eark.validation.ValidationResult;
+import eu.europa.ec.itb.validator.eark.validation.Validator;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Component that exercises the service's processing paths (JSON parsing, report mapping, XML serialisation and backend
+ * call preparation) once all beans are created and before the web server starts accepting requests. This moves the
+ * cost of class loading and initialisation from the first request to startup.
+ *
+ * Warm-up is enabled through the validator.warmUp property (set in the fast-start profile).
+ */
+@Component
+public class WarmUp implements SmartInitializingSingleton {
+
+    /** Logger. **/
+    private static final Logger LOG = LoggerFactory.getLogger(WarmUp.class);
+    /** Sample upload response of the backend validator. */
+    private static final String SAMPLE_UPLOAD = "{\"message\":null,\"sha1\":\"0\",\"validation_url\":\"http://localhost/validation\"}";
+    /** Sample validation report of the backend validator. */
+    private static final String SAMPLE_REPORT = "{\"metadata_valid\":false,\"schema_valid\":false,\"schema_errors\":[\"Sample error\"]," +
+            "\"profile_errors\":[{\"location\":\"METS.xml\",\"message\":\"Sample error\",\"rule_id\":\"CSIP1\",\"severity\":\"Error\",\"test\":\"Sample\"}]," +
+            "\"profile_warnings\":[{\"location\":\"METS.xml\",\"message\":\"Sample warning\",\"rule_id\":\"CSIP2\",\"severity\":\"Warn\",\"test\":\"Sample\"}]}";
+
+    @Value("${validator.warmUp:false}")
+    private boolean enabled;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ValidationServiceImpl validationService;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private JAXBContext reportJaxbContext;
+
+    /**
+     * Run the warm-up if enabled. Failures are logged but do not prevent the application from starting.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            long start = System.nanoTime();
+            try {
+                ValidationContext context = new ValidationContext("warmUp", Duration.ofMinutes(1));
+                ValidationResult result = new ValidationResult(
+                        objectMapper.readValue(SAMPLE_UPLOAD, UploadResult.class),
+                        objectMapper.readValue(SAMPLE_REPORT, ValidationReport.class)
+                );
+                objectMapper.writeValue(OutputStream.nullOutputStream(), result);
+                TAR report = validationService.toTAR(result, null, "0", null, context);
+                reportJaxbContext.createMarshaller().marshal(new JAXBElement<>(ValidationController.TAR_ELEMENT, TAR.class, report), OutputStream.nullOutputStream());
+                validator.warmUp(context);
+                LOG.info("Warm-up completed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (Exception e) {
+                LOG.warn("Warm-up failed", e);
+            }
+        }
+    }
+
+}
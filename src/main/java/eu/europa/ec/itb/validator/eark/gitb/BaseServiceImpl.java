@@ -22,6 +22,20 @@ public abstract class BaseServiceImpl {
     @Autowired
     private ObjectFactory objectFactory;
 
+    /** Factory for report dates (created once as its lookup is costly). */
+    private final DatatypeFactory datatypeFactory;
+
+    /**
+     * Constructor.
+     */
+    protected BaseServiceImpl() {
+        try {
+            datatypeFactory = DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException("Unable to construct data type factory for date", e);
+        }
+    }
+
     /**
      * Create a parameter definition.
      *
@@ -57,6 +71,21 @@ public abstract class BaseServiceImpl {
         return inputs.get(0).getValue();
     }
 
+    /**
+     * Get an optional parameter value.
+     *
+     * @param parameters The parameters to check.
+     * @param inputName The input name.
+     * @return The located value (null if not provided).
+     */
+    String getOptionalInput(List<AnyContent> parameters, String inputName) {
+        List<AnyContent> inputs = getInput(parameters, inputName);
+        if (inputs.size() > 1) {
+            throw new IllegalArgumentException(String.format("This service expects at most one input to be provided named '%s'", inputName));
+        }
+        return inputs.isEmpty()?null:inputs.get(0).getValue();
+    }
+
     /**
      * Lookup a provided input from the received request parameters.
      *
@@ -100,12 +129,7 @@ public abstract class BaseServiceImpl {
      * @return The calendar.
      */
     XMLGregorianCalendar getCurrentDate() {
-        GregorianCalendar calendar = new GregorianCalendar();
-        try {
-            return DatatypeFactory.newInstance().newXMLGregorianCalendar(calendar);
-        } catch (DatatypeConfigurationException e) {
-            throw new IllegalStateException("Unable to construct data type factory for date", e);
-        }
+        return datatypeFactory.newXMLGregorianCalendar(new GregorianCalendar());
     }
 
     /**
@@ -136,6 +160,16 @@ public abstract class BaseServiceImpl {
         reportItems.add(objectFactory.createTestAssertionGroupReportsTypeError(createReportItemContent(message, null, null, null)));
     }
 
+    /**
+     * Add an information message to the report.
+     *
+     * @param message The message.
+     * @param reportItems The report's items.
+     */
+    void addReportItemInfo(String message, List<JAXBElement<TestAssertionReportType>> reportItems) {
+        reportItems.add(objectFactory.createTestAssertionGroupReportsTypeInfo(createReportItemContent(message, null, null, null)));
+    }
+
     /**
      * Add an error item to the report.
      *
@@ -2,9 +2,19 @@ package eu.europa.ec.itb.validator.eark.gitb;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gitb.tr.ObjectFactory;
+import com.gitb.tr.TAR;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
 /**
  * Configuration class responsible for creating Spring beans.
  */
@@ -31,4 +41,50 @@ public class BeanConfig {
         return new ObjectFactory();
     }
 
+    /**
+     * The HTTP client used to call the backend validator instances. The client is shared so that connections (and
+     * their TLS sessions) are pooled across requests.
+     *
+     * @param maxConnections The maximum number of connections per backend instance.
+     * @return The client.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(@Value("${validator.backendMaxConnections:50}") int maxConnections) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setMaxTotal(Integer.MAX_VALUE);
+        return HttpClientBuilder.create().setConnectionManager(connectionManager).build();
+    }
+
+    /**
+     * The scheduler used to abort backend calls that overrun their request's deadline.
+     *
+     * Abort tasks are cancelled as soon as their call completes. They are then removed from the queue immediately,
+     * rather than at their deadline, so that they do not keep references to completed requests.
+     *
+     * @return The scheduler.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService deadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "validation-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * The JAXB context used to serialise TAR reports outside the SOAP service (the context is thread-safe and costly
+     * to create).
+     *
+     * @return The context.
+     * @throws JAXBException If the context cannot be created.
+     */
+    @Bean
+    public JAXBContext reportJaxbContext() throws JAXBException {
+        return JAXBContext.newInstance(ObjectFactory.class, TAR.class);
+    }
+
 }
@@ -0,0 +1,169 @@
+package eu.europa.ec.itb.validator.eark.gitb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the items to include in a TAR report, optionally aggregating repeated items and capping their number.
+ *
+ * When aggregating, items with the same severity and message (the message including the rule identifier) are
+ * grouped into a single item that records the number of occurrences and a bounded sample of their locations. When
+ * neither aggregating nor capping, a collector can instead pass each item directly to a {@link Sink} without storing
+ * it.
+ */
+class ReportItemCollector {
+
+    private final boolean aggregate;
+    private final int maxItems;
+    private final int maxLocationSamples;
+    private final Sink sink;
+    private final List<Item> items = new ArrayList<>();
+    private final Map<String, Item> groups = new HashMap<>();
+    private int omittedCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param aggregate Whether repeated items should be grouped.
+     * @param maxItems The maximum number of items to keep (zero or negative for no limit).
+     * @param maxLocationSamples The maximum number of locations to keep per grouped item.
+     */
+    ReportItemCollector(boolean aggregate, int maxItems, int maxLocationSamples) {
+        this.aggregate = aggregate;
+        this.maxItems = maxItems;
+        this.maxLocationSamples = Math.max(maxLocationSamples, 1);
+        this.sink = null;
+    }
+
+    /**
+     * Constructor for a collector passing all items directly to the provided sink.
+     *
+     * @param sink The sink to receive the items.
+     */
+    ReportItemCollector(Sink sink) {
+        this.aggregate = false;
+        this.maxItems = 0;
+        this.maxLocationSamples = 1;
+        this.sink = sink;
+    }
+
+    /**
+     * Add an item.
+     *
+     * @param warning True for a warning, false for an error.
+     * @param message The item's message.
+     * @param test The item's test (may be null).
+     * @param ruleId The item's rule identifier (may be null).
+     * @param location The item's location (may be null).
+     */
+    void add(boolean warning, String message, String test, String ruleId, String location) {
+        if (sink != null) {
+            sink.accept(warning, message, test, ruleId, location);
+            return;
+        }
+        String key = null;
+        if (aggregate) {
+            key = (warning?"W":"E") + "|" + ruleId + "|" + message;
+            Item existing = groups.get(key);
+            if (existing != null) {
+                existing.occurrences += 1;
+                if (location != null && existing.locations.size() < maxLocationSamples) {
+                    existing.locations.add(location);
+                }
+                return;
+            }
+        }
+        if (maxItems > 0 && items.size() >= maxItems) {
+            omittedCount += 1;
+            return;
+        }
+        Item item = new Item(warning, message, test, ruleId);
+        if (location != null) {
+            item.locations.add(location);
+        }
+        items.add(item);
+        if (key != null) {
+            groups.put(key, item);
+        }
+    }
+
+    /**
+     * @return The items to report, in the order they were first encountered (empty if items are passed to a sink).
+     */
+    List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @return The number of received items that are not represented in the reported items due to the cap.
+     */
+    int getOmittedCount() {
+        return omittedCount;
+    }
+
+    /**
+     * Receiver of the items of a collector that does not store them.
+     */
+    @FunctionalInterface
+    interface Sink {
+
+        /**
+         * Receive an item.
+         *
+         * @param warning True for a warning, false for an error.
+         * @param message The item's message.
+         * @param test The item's test (may be null).
+         * @param ruleId The item's rule identifier (may be null).
+         * @param location The item's location (may be null).
+         */
+        void accept(boolean warning, String message, String test, String ruleId, String location);
+
+    }
+
+    /**
+     * A (possibly grouped) item to report.
+     */
+    static class Item {
+
+        private final boolean warning;
+        private final String message;
+        private final String test;
+        private final String ruleId;
+        private final List<String> locations = new ArrayList<>(1);
+        private int occurrences = 1;
+
+        Item(boolean warning, String message, String test, String ruleId) {
+            this.warning = warning;
+            this.message = message;
+            this.test = test;
+            this.ruleId = ruleId;
+        }
+
+        boolean isWarning() {
+            return warning;
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        String getTest() {
+            return test;
+        }
+
+        String getRuleId() {
+            return ruleId;
+        }
+
+        List<String> getLocations() {
+            return locations;
+        }
+
+        int getOccurrences() {
+            return occurrences;
+        }
+    }
+
+}
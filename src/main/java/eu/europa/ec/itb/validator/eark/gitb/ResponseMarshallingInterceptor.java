@@ -0,0 +1,51 @@
+package eu.europa.ec.itb.validator.eark.gitb;
+
+import eu.europa.ec.itb.validator.eark.jfr.ResponseMarshallingEvent;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+
+/**
+ * CXF interceptor recording the serialisation of validation responses as Java Flight Recorder events.
+ *
+ * The interceptor is registered twice on the outbound chain: once before the marshalling phase to start the event and
+ * once after it to complete it. Only responses to validation requests (for which a {@link ValidationContext} is set
+ * on the exchange) are recorded.
+ */
+public class ResponseMarshallingInterceptor extends AbstractPhaseInterceptor<Message> {
+
+    /**
+     * Constructor.
+     *
+     * @param phase The phase to run in ({@link Phase#PRE_MARSHAL} to start the event, {@link Phase#POST_MARSHAL} to complete it).
+     */
+    public ResponseMarshallingInterceptor(String phase) {
+        super(phase);
+    }
+
+    /**
+     * Start or complete the message's event.
+     *
+     * @param message The outbound message.
+     */
+    @Override
+    public void handleMessage(Message message) {
+        ValidationContext context = message.getExchange().get(ValidationContext.class);
+        if (context != null) {
+            if (Phase.PRE_MARSHAL.equals(getPhase())) {
+                ResponseMarshallingEvent event = new ResponseMarshallingEvent();
+                if (event.isEnabled()) {
+                    event.begin();
+                    message.put(ResponseMarshallingEvent.class, event);
+                }
+            } else {
+                ResponseMarshallingEvent event = message.get(ResponseMarshallingEvent.class);
+                if (event != null) {
+                    event.complete(context, null, 1);
+                }
+            }
+        }
+    }
+
+}
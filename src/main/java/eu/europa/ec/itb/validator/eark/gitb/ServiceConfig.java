@@ -2,7 +2,10 @@ package eu.europa.ec.itb.validator.eark.gitb;
 
 import org.apache.cxf.Bus;
 import org.apache.cxf.jaxws.EndpointImpl;
+import org.apache.cxf.phase.Phase;
+import org.apache.cxf.transport.common.gzip.GZIPFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -20,9 +23,18 @@ public class ServiceConfig {
     @Autowired
     ValidationServiceImpl validationServiceImplementation;
 
+    @Value("${validator.compressionEnabled:true}")
+    boolean compressionEnabled;
+
+    @Value("${validator.compressionThreshold:1024}")
+    int compressionThreshold;
+
     /**
      * The CXF endpoint that will serve validation service calls.
      *
+     * If enabled, GZIP-encoded requests are accepted and responses exceeding the configured threshold are compressed
+     * for clients that accept GZIP encoding. Compression and decompression are applied on the message streams.
+     *
      * @return The endpoint.
      */
     @Bean
@@ -30,6 +42,13 @@ public class ServiceConfig {
         EndpointImpl endpoint = new EndpointImpl(cxfBus, validationServiceImplementation);
         endpoint.setServiceName(new QName("http://www.gitb.com/vs/v1/", "ValidationService"));
         endpoint.setEndpointName(new QName("http://www.gitb.com/vs/v1/", "ValidationServicePort"));
+        endpoint.getOutInterceptors().add(new ResponseMarshallingInterceptor(Phase.PRE_MARSHAL));
+        endpoint.getOutInterceptors().add(new ResponseMarshallingInterceptor(Phase.POST_MARSHAL));
+        if (compressionEnabled) {
+            GZIPFeature compression = new GZIPFeature();
+            compression.setThreshold(compressionThreshold);
+            endpoint.getFeatures().add(compression);
+        }
         endpoint.publish("/validation");
         return endpoint;
     }
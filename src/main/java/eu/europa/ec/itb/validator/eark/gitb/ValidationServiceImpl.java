@@ -9,23 +9,30 @@ import com.gitb.tr.TestAssertionReportType;
 import com.gitb.tr.TestResultType;
 import com.gitb.vs.Void;
 import com.gitb.vs.*;
+import eu.europa.ec.itb.validator.eark.jfr.ReportMappingEvent;
+import eu.europa.ec.itb.validator.eark.validation.FixityError;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
 import eu.europa.ec.itb.validator.eark.validation.ValidationReport;
 import eu.europa.ec.itb.validator.eark.validation.ValidationResult;
 import eu.europa.ec.itb.validator.eark.validation.Validator;
+import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBElement;
 import org.apache.commons.io.FileUtils;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Spring component that realises the validation service.
@@ -43,6 +50,10 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
     public static final String INPUT__DIGEST = "digest";
     /** The name of the report URL session data item. */
     public static final String INPUT__REPORT_URL = "reportUrl";
+    /** The name of the input parameter for the time (in seconds) after which the validation is abandoned. */
+    public static final String INPUT__TIMEOUT = "timeout";
+    /** The name of the input parameter requesting the report's items without aggregation or truncation. */
+    public static final String INPUT__FULL_REPORT = "fullReport";
     /** Operation instructing the validator to only upload the archive and do the SHA check. */
     public static final String OPERATION__UPLOAD = "upload";
     /** Operation instructing the validator to only get a validation report from a provided URL. */
@@ -57,12 +68,32 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
     @Value("${validator.tmpFolder}")
     private String tmpFolder;
 
+    @Value("${validator.reportAggregation:false}")
+    private boolean reportAggregation;
+
+    @Value("${validator.reportMaxItems:0}")
+    private int reportMaxItems;
+
+    @Value("${validator.reportLocationSamples:5}")
+    private int reportLocationSamples;
+
     @Autowired
     private ObjectMapper objectMapper;
 
     @Autowired
     private Validator validator;
 
+    /** The module definition (immutable and hence computed once). */
+    private GetModuleDefinitionResponse moduleDefinition;
+
+    /**
+     * Prepare the response to getModuleDefinition calls.
+     */
+    @PostConstruct
+    public void init() {
+        moduleDefinition = createModuleDefinition();
+    }
+
     /**
      * The purpose of the getModuleDefinition call is to inform its caller on how the service is supposed to be called.
      *
@@ -71,6 +102,15 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
      */
     @Override
     public GetModuleDefinitionResponse getModuleDefinition(Void parameters) {
+        return moduleDefinition;
+    }
+
+    /**
+     * Create the module definition describing how the service is supposed to be called.
+     *
+     * @return The response.
+     */
+    private GetModuleDefinitionResponse createModuleDefinition() {
         GetModuleDefinitionResponse response = new GetModuleDefinitionResponse();
         response.setModule(new ValidationModule());
         response.getModule().setId(serviceId);
@@ -83,6 +123,8 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
         response.getModule().getInputs().getParam().add(createParameter(INPUT__ARCHIVE, "binary", UsageEnumeration.O, ConfigurationType.BINARY, String.format("The archive to validate (required when operation is '%s').", OPERATION__UPLOAD)));
         response.getModule().getInputs().getParam().add(createParameter(INPUT__DIGEST, "string", UsageEnumeration.O, ConfigurationType.SIMPLE, String.format("The digest of the archive to validate (required when operation is '%s').", OPERATION__UPLOAD)));
         response.getModule().getInputs().getParam().add(createParameter(INPUT__REPORT_URL, "string", UsageEnumeration.O, ConfigurationType.SIMPLE, String.format("The validation report URL (required when operation is '%s').", OPERATION__REPORT)));
+        response.getModule().getInputs().getParam().add(createParameter(INPUT__TIMEOUT, "number", UsageEnumeration.O, ConfigurationType.SIMPLE, "The time in seconds after which the validation is abandoned (capped by the service's configured timeout)."));
+        response.getModule().getInputs().getParam().add(createParameter(INPUT__FULL_REPORT, "boolean", UsageEnumeration.O, ConfigurationType.SIMPLE, "Whether the report should include all items without aggregation or truncation (default false)."));
         return response;
     }
 
@@ -99,26 +141,31 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
         ValidationResponse result = new ValidationResponse();
         // Extract and check the operation to perform.
         String operation = getRequiredInput(parameters.getInput(), INPUT__OPERATION);
+        ValidationContext context = validator.createContext(operation, getOptionalInput(parameters.getInput(), INPUT__TIMEOUT));
+        context.setFullReport(Boolean.parseBoolean(getOptionalInput(parameters.getInput(), INPUT__FULL_REPORT)));
+        // Expose the context to the interceptors recording the response's serialisation.
+        Message currentMessage = PhaseInterceptorChain.getCurrentMessage();
+        if (currentMessage != null) {
+            currentMessage.getExchange().put(ValidationContext.class, context);
+        }
         if (OPERATION__UPLOAD.equals(operation)) {
             // Extract inputs (archive and digest).
             String providedDigest = getRequiredInput(parameters.getInput(), INPUT__DIGEST);
-            File inputArchive = new File(new File(tmpFolder), UUID.randomUUID().toString()+".zip");
+            context.setDigest(providedDigest);
+            File inputArchive = new File(new File(tmpFolder), context.getId()+".zip");
             try {
-                try {
-                    inputArchive.getParentFile().mkdirs();
-                    FileUtils.writeByteArrayToFile(inputArchive, Base64.getDecoder().decode(getRequiredInput(parameters.getInput(), INPUT__ARCHIVE)));
-
-                } catch (IOException e) {
-                    throw new IllegalStateException("Unable to write archive to file system", e);
-                }
-                result.setReport(toTAR(validator.upload(inputArchive, providedDigest), inputArchive, providedDigest, null));
+                byte[] encodedArchive = getRequiredInput(parameters.getInput(), INPUT__ARCHIVE).getBytes(StandardCharsets.ISO_8859_1);
+                validator.writeArchive(Base64.getDecoder().wrap(new ByteArrayInputStream(encodedArchive)), inputArchive, context);
+                ValidationResult validationResult = validator.upload(inputArchive, providedDigest, context);
+                context.checkDeadline("producing the validation report");
+                result.setReport(toTAR(validationResult, inputArchive, providedDigest, null, context));
             } finally {
                 FileUtils.deleteQuietly(inputArchive);
             }
         } else if (OPERATION__REPORT.equals(operation)) {
             // Extract input (validation report URL).
             String reportUrl = getRequiredInput(parameters.getInput(), INPUT__REPORT_URL);
-            result.setReport(toTAR(validator.validate(reportUrl), null, null, reportUrl));
+            result.setReport(toTAR(validator.validate(reportUrl, context), null, null, reportUrl, context));
         } else {
             throw new IllegalArgumentException(String.format("Unexpected value provided for input '%s'", INPUT__OPERATION));
         }
@@ -129,42 +176,62 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
      * Convert validation result to a TAR (GITB validation report).
      *
      * @param result The result.
+     * @param archiveInput The received archive (null if it should not be included in the report's context).
      * @param digestInput The received digest.
      * @param reportUrlInput The received report URL
+     * @param context The request's context.
      * @return The TAR instance.
      */
-    private TAR toTAR(ValidationResult result, File archiveInput, String digestInput, String reportUrlInput) {
+    public TAR toTAR(ValidationResult result, File archiveInput, String digestInput, String reportUrlInput, ValidationContext context) {
+        ReportMappingEvent event = new ReportMappingEvent();
+        event.begin();
         TAR report = createEmptyReport();
+        boolean reduced = !context.isFullReport() && (reportAggregation || reportMaxItems > 0);
         addInputs(report, digestInput, archiveInput, reportUrlInput);
-        addOutputs(report, result);
+        addOutputs(report, result, !reduced);
         // Populate report.
+        List<JAXBElement<TestAssertionReportType>> reportItems = report.getReports().getInfoOrWarningOrError();
+        ReportItemCollector items;
+        if (reduced) {
+            items = new ReportItemCollector(reportAggregation, reportMaxItems, reportLocationSamples);
+        } else {
+            // Add items to the report as they are received.
+            items = new ReportItemCollector((warning, message, test, ruleId, location) -> addReportItem(warning, createReportItemContent(message, test, ruleId, location), reportItems));
+        }
         int errorCount = 0, warningCount = 0, infoCount = 0;
         if (result.getValidationReport() != null) {
             if (result.getValidationReport().getSchemaErrors() != null) {
                 for (String error: result.getValidationReport().getSchemaErrors()) {
-                    addReportItemError("[Schema] "+error, report.getReports().getInfoOrWarningOrError());
+                    items.add(false, "[Schema] "+error, null, null, null);
                 }
                 errorCount += result.getValidationReport().getSchemaErrors().length;
             }
             if (result.getValidationReport().getProfileErrors() != null) {
                 for (ValidationReport.Item item: result.getValidationReport().getProfileErrors()) {
-                    processValidationReportItem("Profile", item, report.getReports().getInfoOrWarningOrError());
+                    processValidationReportItem("Profile", item, items);
                 }
                 errorCount += result.getValidationReport().getProfileErrors().length;
             }
             if (result.getValidationReport().getProfileWarnings() != null) {
                 for (ValidationReport.Item item: result.getValidationReport().getProfileWarnings()) {
-                    processValidationReportItem("Profile", item, report.getReports().getInfoOrWarningOrError());
+                    processValidationReportItem("Profile", item, items);
                 }
                 warningCount += result.getValidationReport().getProfileWarnings().length;
             }
         }
+        if (result.getFixityErrors() != null) {
+            for (FixityError error: result.getFixityErrors()) {
+                items.add(false, "[Fixity] "+error.getMessage(), null, null, error.getLocation());
+            }
+            errorCount += result.getFixityErrors().size();
+        }
         if (result.getUploadResult() != null) {
             if (result.getUploadResult().getMessage() != null) {
                 errorCount += 1;
-                addReportItemError(result.getUploadResult().getMessage(), report.getReports().getInfoOrWarningOrError());
+                items.add(false, result.getUploadResult().getMessage(), null, null, null);
             }
         }
+        addReportItems(items, reportItems);
         // Set counters.
         report.getCounters().setNrOfErrors(BigInteger.valueOf(errorCount));
         report.getCounters().setNrOfWarnings(BigInteger.valueOf(warningCount));
@@ -177,6 +244,7 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
         } else {
             report.setResult(TestResultType.SUCCESS);
         }
+        event.complete(context, null, report.getReports().getInfoOrWarningOrError().size());
         return report;
     }
 
@@ -210,10 +278,14 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
     /**
      * Add output values to the report's context.
      *
+     * The backend's full validation report is omitted if the report's items are aggregated or capped, as it would
+     * otherwise reintroduce all items in the report's context. The report URL remains available to retrieve it.
+     *
      * @param report The report.
      * @param result The result to use.
+     * @param includeValidationReport Whether to include the backend's full validation report.
      */
-    private void addOutputs(TAR report, ValidationResult result) {
+    private void addOutputs(TAR report, ValidationResult result, boolean includeValidationReport) {
         AnyContent outputMap = new AnyContent();
         outputMap.setName("output");
         if (result.getUploadResult() != null) {
@@ -226,7 +298,7 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
                 LOG.warn("Unable to serialise upload result", e);
             }
         }
-        if (result.getValidationReport() != null) {
+        if (includeValidationReport && result.getValidationReport() != null) {
             try {
                 outputMap.getItem().add(createAnyContent("validation", replaceBadCharacters(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(result.getValidationReport())), "string", ValueEmbeddingEnumeration.STRING));
             } catch (JsonProcessingException e) {
@@ -252,14 +324,53 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
         return output;
     }
 
+    /**
+     * Add the collected items to the TAR report, describing grouped and omitted items.
+     *
+     * @param items The collected items.
+     * @param reportItems The TAR items to add to.
+     */
+    private void addReportItems(ReportItemCollector items, List<JAXBElement<TestAssertionReportType>> reportItems) {
+        for (ReportItemCollector.Item item: items.getItems()) {
+            String messageToSet = item.getMessage();
+            String locationToSet = item.getLocations().isEmpty()?null:item.getLocations().get(0);
+            if (item.getOccurrences() > 1) {
+                messageToSet += String.format(" (%d occurrences", item.getOccurrences());
+                if (item.getLocations().size() > 1) {
+                    messageToSet += "; locations include " + String.join(", ", item.getLocations());
+                }
+                messageToSet += ")";
+            }
+            addReportItem(item.isWarning(), createReportItemContent(messageToSet, item.getTest(), item.getRuleId(), locationToSet), reportItems);
+        }
+        if (items.getOmittedCount() > 0) {
+            addReportItemInfo(String.format("[Report] %d further items were omitted from this report. Request the full report to view all items.", items.getOmittedCount()), reportItems);
+        }
+    }
+
+    /**
+     * Add a warning or error to the TAR report.
+     *
+     * @param warning True for a warning, false for an error.
+     * @param itemContent The item's content.
+     * @param reportItems The TAR items to add to.
+     */
+    private void addReportItem(boolean warning, BAR itemContent, List<JAXBElement<TestAssertionReportType>> reportItems) {
+        if (warning) {
+            addReportItemWarning(itemContent, reportItems);
+        } else {
+            addReportItemError(itemContent, reportItems);
+        }
+    }
+
     /**
      * Map an item from the received validation report to a TAR report item.
      *
      * @param prefix The prefix to add for the report item's message.
      * @param item The item to process.
-     * @param reportItems The TAR items to add to.
+     * @param items The collector of TAR items to add to.
      */
-    private void processValidationReportItem(String prefix, ValidationReport.Item item, List<JAXBElement<TestAssertionReportType>> reportItems) {
+    private void processValidationReportItem(String prefix, ValidationReport.Item item, ReportItemCollector items) {
         String messageToSet = "["+prefix+"]";
         if (item.getRuleId() != null) {
             messageToSet += "["+item.getRuleId()+"]";
@@ -268,12 +379,7 @@ public class ValidationServiceImpl extends BaseServiceImpl implements Validation
             // Remove non-ASCII characters.
             messageToSet += " " + replaceBadCharacters(item.getMessage());
         }
-        BAR itemContent = createReportItemContent(messageToSet, item.getTest(), item.getRuleId(), item.getLocation());
-        if ("Warn".equals(item.getSeverity())) {
-            addReportItemWarning(itemContent, reportItems);
-        } else {
-            addReportItemError(itemContent, reportItems);
-        }
+        items.add("Warn".equals(item.getSeverity()), messageToSet, item.getTest(), item.getRuleId(), item.getLocation());
     }
 
 }
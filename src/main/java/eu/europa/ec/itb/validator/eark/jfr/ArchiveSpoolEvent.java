@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the decoding and writing of a received archive to the file system.
+ */
+@Name("eu.europa.ec.itb.validator.eark.ArchiveSpool")
+@Label("Archive Spool")
+@Description("Decoding and writing of the received archive to the file system.")
+public class ArchiveSpoolEvent extends ValidationPhaseEvent {
+}
@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the local verification of the checksums declared in an archive's METS files.
+ */
+@Name("eu.europa.ec.itb.validator.eark.FixityCheck")
+@Label("Fixity Check")
+@Description("Local verification of the checksums declared in the archive's METS files.")
+public class FixityCheckEvent extends ValidationPhaseEvent {
+}
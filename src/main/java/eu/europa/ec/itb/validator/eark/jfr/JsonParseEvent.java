@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the parsing of a backend validator's JSON response.
+ */
+@Name("eu.europa.ec.itb.validator.eark.JsonParse")
+@Label("JSON Parse")
+@Description("Parsing of the backend validator's JSON response.")
+public class JsonParseEvent extends ValidationPhaseEvent {
+}
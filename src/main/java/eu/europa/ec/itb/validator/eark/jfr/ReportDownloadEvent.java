@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the download of a validation report from the backend validator.
+ */
+@Name("eu.europa.ec.itb.validator.eark.ReportDownload")
+@Label("Report Download")
+@Description("Download of the validation report from the backend validator.")
+public class ReportDownloadEvent extends ValidationPhaseEvent {
+}
@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the mapping of a validation result to a TAR report.
+ */
+@Name("eu.europa.ec.itb.validator.eark.ReportMapping")
+@Label("Report Mapping")
+@Description("Mapping of the validation result to a TAR report.")
+public class ReportMappingEvent extends ValidationPhaseEvent {
+}
@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the serialisation of a validation response.
+ */
+@Name("eu.europa.ec.itb.validator.eark.ResponseMarshalling")
+@Label("Response Marshalling")
+@Description("Serialisation of the validation response.")
+public class ResponseMarshallingEvent extends ValidationPhaseEvent {
+}
@@ -0,0 +1,14 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Event recorded for the upload of an archive to the backend validator.
+ */
+@Name("eu.europa.ec.itb.validator.eark.Upload")
+@Label("Archive Upload")
+@Description("Upload of the archive to the backend validator.")
+public class UploadEvent extends ValidationPhaseEvent {
+}
@@ -0,0 +1,71 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class for the Java Flight Recorder events recorded for each phase of a validation.
+ *
+ * Events are expected to be used as follows: create the event, call {@link #begin()} before the phase starts and
+ * {@link #complete(ValidationContext, String, int)} once it has finished. The event's details are only collected if
+ * the event is to be recorded given the active recording settings (e.g. if the phase exceeded its threshold).
+ */
+@Category({"E-ARK Validator", "Validation"})
+@StackTrace(false)
+public abstract class ValidationPhaseEvent extends Event {
+
+    /** The number of digest characters included in events. */
+    private static final int DIGEST_PREFIX_LENGTH = 8;
+
+    @Label("Request ID")
+    String requestId;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Archive Size")
+    @Description("Size of the received archive, left unset (zero) if the operation did not receive an archive.")
+    @DataAmount
+    long archiveSize;
+
+    @Label("Digest Prefix")
+    String digestPrefix;
+
+    @Label("Backend Endpoint")
+    String backendEndpoint;
+
+    @Label("Item Count")
+    int itemCount;
+
+    /**
+     * Complete the phase and record the event if this is required by the active recording settings.
+     *
+     * @param context The request's context (may be null).
+     * @param backendEndpoint The backend endpoint involved in the phase (may be null).
+     * @param itemCount The number of items processed in the phase.
+     */
+    public void complete(ValidationContext context, String backendEndpoint, int itemCount) {
+        end();
+        if (shouldCommit()) {
+            if (context != null) {
+                this.requestId = context.getId();
+                this.operation = context.getOperation();
+                if (context.getArchiveSize() >= 0) {
+                    this.archiveSize = context.getArchiveSize();
+                }
+                if (context.getDigest() != null) {
+                    this.digestPrefix = context.getDigest().substring(0, Math.min(DIGEST_PREFIX_LENGTH, context.getDigest().length()));
+                }
+            }
+            this.backendEndpoint = backendEndpoint;
+            this.itemCount = itemCount;
+            commit();
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package eu.europa.ec.itb.validator.eark.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitb.tr.TAR;
+import eu.europa.ec.itb.validator.eark.gitb.ValidationServiceImpl;
+import eu.europa.ec.itb.validator.eark.jfr.ResponseMarshallingEvent;
+import eu.europa.ec.itb.validator.eark.validation.BackendSelector;
+import eu.europa.ec.itb.validator.eark.validation.DeadlineExceededException;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import eu.europa.ec.itb.validator.eark.validation.ValidationResult;
+import eu.europa.ec.itb.validator.eark.validation.Validator;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.xml.namespace.QName;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST controller allowing clients to validate archives without going through the GITB SOAP API.
+ *
+ * The archive is received as the raw (optionally chunked) request body and is streamed to the file system before being
+ * passed to the {@link Validator}. The result is returned as JSON or as a GITB TAR report in XML, depending on the
+ * request's Accept header.
+ */
+@RestController
+@RequestMapping("/api")
+public class ValidationController {
+
+    /** The name of the request header through which the archive's digest can be provided. */
+    public static final String HEADER__DIGEST = "X-Digest";
+    /** The name of the request parameter through which the archive's digest can be provided. */
+    public static final String PARAM__DIGEST = "digest";
+    /** The name of the request parameter for the validation report URL. */
+    public static final String PARAM__REPORT_URL = "reportUrl";
+    /** The name of the request header through which the timeout (in seconds) can be provided. */
+    public static final String HEADER__TIMEOUT = "X-Timeout";
+    /** The name of the request parameter through which the timeout (in seconds) can be provided. */
+    public static final String PARAM__TIMEOUT = "timeout";
+    /** The name of the request parameter requesting the report's items without aggregation or truncation. */
+    public static final String PARAM__FULL_REPORT = "fullReport";
+    /** The media type for ZIP archives (besides application/octet-stream) accepted as upload request bodies. */
+    public static final String MEDIA_TYPE__ZIP = "application/zip";
+    /** The qualified name of the root element for TAR reports. */
+    public static final QName TAR_ELEMENT = new QName("http://www.gitb.com/tr/v1/", "TestStepReport");
+
+    @Value("${validator.tmpFolder}")
+    private String tmpFolder;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private BackendSelector backendSelector;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ValidationServiceImpl validationService;
+
+    @Autowired
+    private JAXBContext reportJaxbContext;
+
+    /**
+     * Upload an archive for validation.
+     *
+     * Only binary request bodies are accepted so that the archive is never consumed by the container's form parameter
+     * parsing (a request without Content-Type is treated as application/octet-stream). Form submissions are rejected
+     * with a 415 response.
+     *
+     * @param request The HTTP request whose body is the archive to validate.
+     * @param digestHeader The archive's digest provided as a header.
+     * @param digestParameter The archive's digest provided as a request parameter.
+     * @param timeoutHeader The timeout in seconds provided as a header.
+     * @param timeoutParameter The timeout in seconds provided as a request parameter.
+     * @param fullReport Whether the XML report should include all items without aggregation or truncation.
+     * @param accept The Accept header used to determine the response's format.
+     * @return The upload result.
+     */
+    @PostMapping(value = "/upload", consumes = {MediaType.APPLICATION_OCTET_STREAM_VALUE, MEDIA_TYPE__ZIP})
+    public ResponseEntity<?> upload(HttpServletRequest request,
+                                    @RequestHeader(name = HEADER__DIGEST, required = false) String digestHeader,
+                                    @RequestParam(name = PARAM__DIGEST, required = false) String digestParameter,
+                                    @RequestHeader(name = HEADER__TIMEOUT, required = false) String timeoutHeader,
+                                    @RequestParam(name = PARAM__TIMEOUT, required = false) String timeoutParameter,
+                                    @RequestParam(name = PARAM__FULL_REPORT, defaultValue = "false") boolean fullReport,
+                                    @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        String digest = firstNonBlank(digestHeader, digestParameter);
+        if (digest == null) {
+            throw new IllegalArgumentException(String.format("The archive's digest must be provided via the '%s' header or the '%s' parameter", HEADER__DIGEST, PARAM__DIGEST));
+        }
+        ValidationContext context = validator.createContext(ValidationServiceImpl.OPERATION__UPLOAD, firstNonBlank(timeoutHeader, timeoutParameter));
+        context.setDigest(digest);
+        context.setFullReport(fullReport);
+        File inputArchive = new File(new File(tmpFolder), context.getId()+".zip");
+        ValidationResult result;
+        try {
+            try {
+                validator.writeArchive(request.getInputStream(), inputArchive, context);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read archive from request", e);
+            }
+            result = validator.upload(inputArchive, digest, context);
+            context.checkDeadline("producing the validation report");
+        } finally {
+            FileUtils.deleteQuietly(inputArchive);
+        }
+        return toResponse(result, digest, null, accept, context);
+    }
+
+    /**
+     * Retrieve the validation report for a previously uploaded archive.
+     *
+     * Only report URLs pointing to one of the configured backend validator instances are accepted, so that the service
+     * cannot be used to fetch arbitrary URLs.
+     *
+     * @param reportUrl The validation report URL returned by the upload.
+     * @param timeoutHeader The timeout in seconds provided as a header.
+     * @param timeoutParameter The timeout in seconds provided as a request parameter.
+     * @param fullReport Whether the XML report should include all items without aggregation or truncation.
+     * @param accept The Accept header used to determine the response's format.
+     * @return The validation report.
+     */
+    @GetMapping("/report")
+    public ResponseEntity<?> report(@RequestParam(name = PARAM__REPORT_URL) String reportUrl,
+                                    @RequestHeader(name = HEADER__TIMEOUT, required = false) String timeoutHeader,
+                                    @RequestParam(name = PARAM__TIMEOUT, required = false) String timeoutParameter,
+                                    @RequestParam(name = PARAM__FULL_REPORT, defaultValue = "false") boolean fullReport,
+                                    @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (backendSelector.forUrl(reportUrl) == null) {
+            throw new IllegalArgumentException(String.format("The '%s' parameter must point to a configured backend validator", PARAM__REPORT_URL));
+        }
+        ValidationContext context = validator.createContext(ValidationServiceImpl.OPERATION__REPORT, firstNonBlank(timeoutHeader, timeoutParameter));
+        context.setFullReport(fullReport);
+        return toResponse(validator.validate(reportUrl, context), null, reportUrl, accept, context);
+    }
+
+    /**
+     * Map invalid input errors to bad request responses.
+     *
+     * @param e The error.
+     * @return The response.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleInvalidInput(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+
+    /**
+     * Map abandoned requests to gateway timeout responses.
+     *
+     * @param e The error.
+     * @return The response.
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handleDeadlineExceeded(DeadlineExceededException e) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+    }
+
+    /**
+     * Return the first of the provided values that is not blank.
+     *
+     * @param value The preferred value.
+     * @param fallback The value to use if the preferred one is blank.
+     * @return The value to use (null if both are blank).
+     */
+    private String firstNonBlank(String value, String fallback) {
+        if (value != null && !value.isBlank()) {
+            return value;
+        }
+        return (fallback != null && !fallback.isBlank())?fallback:null;
+    }
+
+    /**
+     * Create the response for the provided result, serialising it as JSON or as an XML TAR report.
+     *
+     * @param result The validation result.
+     * @param digestInput The received digest.
+     * @param reportUrlInput The received report URL.
+     * @param accept The request's Accept header.
+     * @param context The request's context.
+     * @return The response.
+     */
+    private ResponseEntity<?> toResponse(ValidationResult result, String digestInput, String reportUrlInput, String accept, ValidationContext context) {
+        if (prefersXml(accept)) {
+            // The archive is not echoed back in the report's context to avoid returning it in full.
+            TAR report = validationService.toTAR(result, null, digestInput, reportUrlInput, context);
+            StreamingResponseBody body = out -> {
+                ResponseMarshallingEvent event = new ResponseMarshallingEvent();
+                event.begin();
+                try {
+                    Marshaller marshaller = reportJaxbContext.createMarshaller();
+                    marshaller.marshal(new JAXBElement<>(TAR_ELEMENT, TAR.class, report), out);
+                } catch (JAXBException e) {
+                    throw new IOException("Unable to serialise validation report", e);
+                } finally {
+                    event.complete(context, null, report.getReports().getInfoOrWarningOrError().size());
+                }
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_XML).body(body);
+        }
+        StreamingResponseBody body = out -> {
+            ResponseMarshallingEvent event = new ResponseMarshallingEvent();
+            event.begin();
+            try {
+                objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, result);
+            } finally {
+                event.complete(context, null, 1);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Determine from the Accept header whether XML is preferred over JSON (JSON being the default).
+     *
+     * @param accept The Accept header value.
+     * @return True if XML is preferred.
+     */
+    private boolean prefersXml(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        List<MediaType> mediaTypes = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        // Stable sort so that types with equal quality keep their declared order.
+        mediaTypes.sort((type1, type2) -> Double.compare(type2.getQualityValue(), type1.getQualityValue()));
+        for (MediaType mediaType: mediaTypes) {
+            if (mediaType.getQualityValue() > 0) {
+                if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return false;
+                } else if (mediaType.isCompatibleWith(MediaType.APPLICATION_XML) || mediaType.isCompatibleWith(MediaType.TEXT_XML)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,164 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A backend validator instance and the runtime statistics used to balance load across instances.
+ *
+ * Health is tracked passively: consecutive failed calls eject the instance for a cooldown period after which it
+ * becomes eligible again. A single success resets the failure count.
+ */
+public class Backend {
+
+    /** Weight given to the latest latency sample when updating the moving average. */
+    private static final double LATENCY_SMOOTHING = 0.3;
+
+    private final String endpoint;
+    private final String authority;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong ejectedUntil = new AtomicLong();
+    private volatile double averageUploadLatencyNanos = -1;
+    private volatile double averageReportLatencyNanos = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param endpoint The backend's upload endpoint URL.
+     */
+    public Backend(String endpoint) {
+        this.endpoint = endpoint;
+        this.authority = authorityOf(endpoint);
+    }
+
+    /**
+     * @return The backend's upload endpoint URL.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return The number of calls currently in progress.
+     */
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    /**
+     * @return The exponentially weighted average upload latency in nanoseconds (negative if no uploads succeeded yet).
+     */
+    public double getAverageUploadLatencyNanos() {
+        return averageUploadLatencyNanos;
+    }
+
+    /**
+     * @return The exponentially weighted average report download latency in nanoseconds (negative if no downloads
+     * succeeded yet).
+     */
+    public double getAverageReportLatencyNanos() {
+        return averageReportLatencyNanos;
+    }
+
+    /**
+     * Check whether this backend can currently receive calls.
+     *
+     * @param now The current time (as per System.nanoTime()).
+     * @return True if the backend is not ejected.
+     */
+    boolean isHealthy(long now) {
+        return now - ejectedUntil.get() >= 0;
+    }
+
+    /**
+     * Check whether the provided URL points to this backend.
+     *
+     * @param url The URL to check.
+     * @return True if the URL's host and port match this backend.
+     */
+    boolean serves(String url) {
+        return authority != null && authority.equalsIgnoreCase(authorityOf(url));
+    }
+
+    /**
+     * Record the start of a call.
+     */
+    void callStarted() {
+        outstandingRequests.incrementAndGet();
+    }
+
+    /**
+     * Record the completion of a call.
+     *
+     * Uploads and report downloads are averaged separately as their latencies differ by orders of magnitude.
+     *
+     * @param now The current time in nanoseconds.
+     * @param durationNanos The call's duration.
+     * @param success Whether the call succeeded.
+     * @param upload Whether the call was an upload (as opposed to a report download).
+     * @param maxFailures The number of consecutive failures after which the backend is ejected.
+     * @param ejectionNanos The duration of an ejection.
+     */
+    void callCompleted(long now, long durationNanos, boolean success, boolean upload, int maxFailures, long ejectionNanos) {
+        outstandingRequests.decrementAndGet();
+        if (success) {
+            consecutiveFailures.set(0);
+            if (upload) {
+                averageUploadLatencyNanos = updateAverage(averageUploadLatencyNanos, durationNanos);
+            } else {
+                averageReportLatencyNanos = updateAverage(averageReportLatencyNanos, durationNanos);
+            }
+        } else if (consecutiveFailures.incrementAndGet() >= maxFailures) {
+            ejectedUntil.set(now + ejectionNanos);
+        }
+    }
+
+    /**
+     * Record the end of a call that was abandoned by the caller, without affecting the backend's health or latency.
+     */
+    void callAbandoned() {
+        outstandingRequests.decrementAndGet();
+    }
+
+    /**
+     * Add a latency sample to an exponentially weighted average.
+     *
+     * @param previous The current average (negative if there are no samples yet).
+     * @param sample The new sample.
+     * @return The updated average.
+     */
+    private static double updateAverage(double previous, long sample) {
+        return (previous < 0)?sample:(LATENCY_SMOOTHING * sample + (1 - LATENCY_SMOOTHING) * previous);
+    }
+
+    /**
+     * Extract the host and port from a URL.
+     *
+     * @param url The URL.
+     * @return The authority in the form host:port (null if the URL cannot be parsed or is not an HTTP(S) URL).
+     */
+    private static String authorityOf(String url) {
+        try {
+            URI uri = URI.create(url.trim());
+            if (uri.getHost() == null || !("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))) {
+                return null;
+            }
+            int port = uri.getPort();
+            if (port < 0) {
+                // Report URLs may have their scheme switched to HTTPS so don't derive the port from the scheme.
+                return uri.getHost();
+            }
+            return uri.getHost() + ":" + port;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + " [outstanding=" + getOutstandingRequests() + ", uploadLatency=" + TimeUnit.NANOSECONDS.toMillis((long) Math.max(averageUploadLatencyNanos, 0)) + "ms, reportLatency=" + TimeUnit.NANOSECONDS.toMillis((long) Math.max(averageReportLatencyNanos, 0)) + "ms]";
+    }
+}
@@ -0,0 +1,206 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Component that selects the backend validator instance to use for each call.
+ *
+ * Uploads are routed to the healthy instance with the fewest outstanding calls or, if configured, the lowest
+ * latency-weighted load. Report downloads always go to the instance that issued the report URL.
+ */
+@Component
+public class BackendSelector {
+
+    /** Selection mode favouring the instance with the fewest calls in progress. */
+    public static final String MODE__LEAST_OUTSTANDING = "leastOutstanding";
+    /** Selection mode favouring the instance with the lowest outstanding calls weighted by average upload latency. */
+    public static final String MODE__LATENCY_WEIGHTED = "latencyWeighted";
+
+    /** Logger. **/
+    private static final Logger LOG = LoggerFactory.getLogger(BackendSelector.class);
+
+    @Value("${validator.backendEndpoints:${validator.backendEndpoint}}")
+    private String[] backendEndpoints;
+
+    @Value("${validator.backendSelection:" + MODE__LEAST_OUTSTANDING + "}")
+    private String selectionMode;
+
+    @Value("${validator.backendMaxFailures:3}")
+    private int maxFailures;
+
+    @Value("${validator.backendEjectionSeconds:30}")
+    private long ejectionSeconds;
+
+    private List<Backend> backends;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    /** The source of the current time in nanoseconds (replaceable for testing). */
+    private LongSupplier clock = System::nanoTime;
+
+    /**
+     * Initialise the configured backends.
+     */
+    @PostConstruct
+    public void init() {
+        if (!MODE__LEAST_OUTSTANDING.equals(selectionMode) && !MODE__LATENCY_WEIGHTED.equals(selectionMode)) {
+            throw new IllegalStateException(String.format("Unsupported backend selection mode '%s' (expected '%s' or '%s')", selectionMode, MODE__LEAST_OUTSTANDING, MODE__LATENCY_WEIGHTED));
+        }
+        List<Backend> configured = new ArrayList<>();
+        for (String endpoint: backendEndpoints) {
+            if (endpoint != null && !endpoint.isBlank()) {
+                configured.add(new Backend(endpoint.trim()));
+            }
+        }
+        if (configured.isEmpty()) {
+            throw new IllegalStateException("At least one backend endpoint must be configured");
+        }
+        backends = Collections.unmodifiableList(configured);
+        LOG.info("Configured {} backend endpoint(s) using '{}' selection", backends.size(), selectionMode);
+    }
+
+    /**
+     * @return The configured backends.
+     */
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Select the backend to send a new upload to.
+     *
+     * If all backends are ejected the least loaded one is still returned to avoid failing the call outright.
+     *
+     * @return The backend.
+     */
+    public Backend select() {
+        if (backends.size() == 1) {
+            return backends.get(0);
+        }
+        long now = clock.getAsLong();
+        double meanLatency = meanUploadLatency();
+        // Start from a rotating offset so that ties are spread across instances.
+        int offset = Math.floorMod(nextIndex.getAndIncrement(), backends.size());
+        Backend selected = null;
+        double selectedScore = Double.MAX_VALUE;
+        boolean selectedHealthy = false;
+        for (int i = 0; i < backends.size(); i++) {
+            Backend candidate = backends.get((offset + i) % backends.size());
+            boolean healthy = candidate.isHealthy(now);
+            if (selectedHealthy && !healthy) {
+                continue;
+            }
+            double score = score(candidate, meanLatency);
+            if (selected == null || (healthy && !selectedHealthy) || score < selectedScore) {
+                selected = candidate;
+                selectedScore = score;
+                selectedHealthy = healthy;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Find the backend that issued the provided URL.
+     *
+     * @param url The URL (e.g. a validation report URL).
+     * @return The matching backend or null if the URL does not belong to any configured backend.
+     */
+    public Backend forUrl(String url) {
+        for (Backend backend: backends) {
+            if (backend.serves(url)) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record the start of a call to a backend.
+     *
+     * @param backend The backend (may be null).
+     * @return The call's start time.
+     */
+    long callStarted(Backend backend) {
+        if (backend != null) {
+            backend.callStarted();
+        }
+        return clock.getAsLong();
+    }
+
+    /**
+     * Record the completion of a call to a backend.
+     *
+     * @param backend The backend (may be null).
+     * @param start The call's start time as returned by callStarted.
+     * @param success Whether the call succeeded.
+     * @param upload Whether the call was an upload (as opposed to a report download).
+     */
+    void callCompleted(Backend backend, long start, boolean success, boolean upload) {
+        if (backend != null) {
+            long now = clock.getAsLong();
+            boolean wasHealthy = backend.isHealthy(now);
+            backend.callCompleted(now, now - start, success, upload, maxFailures, TimeUnit.SECONDS.toNanos(ejectionSeconds));
+            if (wasHealthy && !backend.isHealthy(now)) {
+                LOG.warn("Backend endpoint {} ejected for {} seconds after {} consecutive failures", backend.getEndpoint(), ejectionSeconds, maxFailures);
+            }
+        }
+    }
+
+    /**
+     * Record the end of a call to a backend that was abandoned because the request's deadline passed.
+     *
+     * The call is no longer outstanding but neither counts as a failure nor provides a latency sample.
+     *
+     * @param backend The backend (may be null).
+     */
+    void callAbandoned(Backend backend) {
+        if (backend != null) {
+            backend.callAbandoned();
+        }
+    }
+
+    /**
+     * Calculate the mean of the average upload latencies of the backends that have latency samples.
+     *
+     * @return The mean latency in nanoseconds (negative if no backend has samples).
+     */
+    private double meanUploadLatency() {
+        double total = 0;
+        int sampled = 0;
+        for (Backend backend: backends) {
+            double latency = backend.getAverageUploadLatencyNanos();
+            if (latency >= 0) {
+                total += latency;
+                sampled++;
+            }
+        }
+        return (sampled == 0)?-1:(total / sampled);
+    }
+
+    /**
+     * Calculate the load score of a backend (lower is better).
+     *
+     * @param backend The backend.
+     * @param meanLatency The mean upload latency across backends (negative if no backend has samples).
+     * @return The score.
+     */
+    private double score(Backend backend, double meanLatency) {
+        if (MODE__LATENCY_WEIGHTED.equals(selectionMode) && meanLatency >= 0) {
+            // Instances without samples (e.g. new or only failing ones) are assumed to perform as the others on average.
+            double latency = backend.getAverageUploadLatencyNanos();
+            return ((latency < 0)?meanLatency:latency) * (backend.getOutstandingRequests() + 1);
+        }
+        return backend.getOutstandingRequests();
+    }
+
+}
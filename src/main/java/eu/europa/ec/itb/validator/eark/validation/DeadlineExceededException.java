@@ -0,0 +1,27 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+/**
+ * Exception raised when a validation request is abandoned because its deadline has passed.
+ */
+public class DeadlineExceededException extends IllegalStateException {
+
+    /**
+     * Constructor.
+     *
+     * @param message The error message.
+     */
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param message The error message.
+     * @param cause The root cause.
+     */
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
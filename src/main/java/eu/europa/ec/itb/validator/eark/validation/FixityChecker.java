@@ -0,0 +1,362 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import eu.europa.ec.itb.validator.eark.jfr.FixityCheckEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.zip.ZipException;
+
+/**
+ * Component that verifies locally the checksums declared for each file in the fileSec of an archive's METS files.
+ *
+ * The archive is read in place as a ZIP file system, without extracting it. The METS files are parsed with a streaming
+ * parser and the declared files are then read and hashed in parallel using a dedicated fork-join pool.
+ */
+@Component
+public class FixityChecker {
+
+    /** Logger. **/
+    private static final Logger LOG = LoggerFactory.getLogger(FixityChecker.class);
+    /** The METS namespace. */
+    private static final String NS_METS = "http://www.loc.gov/METS/";
+    /** The XLink namespace. */
+    private static final String NS_XLINK = "http://www.w3.org/1999/xlink";
+    /** The name of METS files within an archive. */
+    private static final String METS_FILE_NAME = "METS.xml";
+    /** Buffer size used when reading files to hash. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /** The supported METS checksum types mapped to their Java digest algorithm names. */
+    private static final Map<String, String> ALGORITHMS = Map.of(
+            "MD5", "MD5",
+            "SHA-1", "SHA-1",
+            "SHA-256", "SHA-256",
+            "SHA-384", "SHA-384",
+            "SHA-512", "SHA-512"
+    );
+
+    @Value("${validator.fixityEnabled:false}")
+    private boolean enabled;
+
+    @Value("${validator.fixityParallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Create the pool used to verify checksums (if enabled).
+     */
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            pool = new ForkJoinPool((parallelism > 0)?parallelism:Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Shut down the pool used to verify checksums.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return True if local fixity verification is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Verify the checksums declared in the archive's METS files.
+     *
+     * Archives that are not ZIP files (e.g. TAR archives, which the backend also accepts) are skipped, leaving their
+     * verification to the backend.
+     *
+     * @param archive The archive.
+     * @param context The request's context.
+     * @return The errors found (empty if all checksums match or the archive is not a ZIP file).
+     */
+    public List<FixityError> check(File archive, ValidationContext context) {
+        context.checkDeadline("verifying the archive's checksums");
+        FixityCheckEvent event = new FixityCheckEvent();
+        event.begin();
+        List<FileCheck> checks = new ArrayList<>();
+        List<FixityError> errors = new ArrayList<>();
+        FileSystem zip;
+        try {
+            zip = FileSystems.newFileSystem(archive.toPath());
+        } catch (ProviderNotFoundException | ZipException e) {
+            LOG.warn("Skipping fixity verification of archive that is not a ZIP file [{}]", context.getId());
+            event.complete(context, null, 0);
+            return errors;
+        } catch (IOException e) {
+            LOG.warn("Unable to open archive for fixity verification", e);
+            errors.add(new FixityError(null, "The archive could not be read to verify the checksums declared in its METS files."));
+            event.complete(context, null, 0);
+            return errors;
+        }
+        try (zip) {
+            for (Path metsFile: findMetsFiles(zip)) {
+                collectChecks(metsFile, checks, errors);
+            }
+            errors.addAll(pool.invoke(new ChecksumTask(checks, 0, checks.size(), context)));
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to read archive for fixity verification", e);
+            errors.add(new FixityError(null, "The archive could not be read to verify the checksums declared in its METS files."));
+        } finally {
+            event.complete(context, null, checks.size());
+        }
+        context.checkDeadline("completing the verification of the archive's checksums");
+        return errors;
+    }
+
+    /**
+     * Find the METS files within the archive.
+     *
+     * @param zip The archive's file system.
+     * @return The METS files.
+     * @throws IOException If the archive cannot be read.
+     */
+    private List<Path> findMetsFiles(FileSystem zip) throws IOException {
+        List<Path> metsFiles = new ArrayList<>();
+        for (Path root: zip.getRootDirectories()) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.filter(path -> path.getFileName() != null && METS_FILE_NAME.equals(path.getFileName().toString()) && Files.isRegularFile(path))
+                        .forEach(metsFiles::add);
+            }
+        }
+        return metsFiles;
+    }
+
+    /**
+     * Parse a METS file to record the checksums declared in its fileSec.
+     *
+     * @param metsFile The METS file.
+     * @param checks The list of checks to add to.
+     * @param errors The list of errors to add to.
+     * @throws IOException If the file cannot be read.
+     */
+    private void collectChecks(Path metsFile, List<FileCheck> checks, List<FixityError> errors) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try (InputStream in = Files.newInputStream(metsFile)) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            try {
+                int fileSecDepth = 0;
+                String checksum = null;
+                String checksumType = null;
+                while (reader.hasNext()) {
+                    int eventType = reader.next();
+                    if (eventType == XMLStreamConstants.START_ELEMENT && NS_METS.equals(reader.getNamespaceURI())) {
+                        String name = reader.getLocalName();
+                        if ("fileSec".equals(name)) {
+                            fileSecDepth += 1;
+                        } else if (fileSecDepth > 0 && "file".equals(name)) {
+                            checksum = reader.getAttributeValue(XMLConstants.NULL_NS_URI, "CHECKSUM");
+                            checksumType = reader.getAttributeValue(XMLConstants.NULL_NS_URI, "CHECKSUMTYPE");
+                        } else if (fileSecDepth > 0 && "FLocat".equals(name) && checksum != null) {
+                            addCheck(metsFile, reader.getAttributeValue(NS_XLINK, "href"), checksumType, checksum, checks, errors);
+                        }
+                    } else if (eventType == XMLStreamConstants.END_ELEMENT && NS_METS.equals(reader.getNamespaceURI())) {
+                        String name = reader.getLocalName();
+                        if ("fileSec".equals(name)) {
+                            fileSecDepth -= 1;
+                        } else if ("file".equals(name)) {
+                            checksum = null;
+                            checksumType = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            LOG.debug("Unable to parse METS file {}", metsFile, e);
+            errors.add(new FixityError(toLocation(metsFile), String.format("The METS file '%s' could not be parsed to verify its declared checksums.", toLocation(metsFile))));
+        }
+    }
+
+    /**
+     * Record the check of a file declared in a METS file.
+     *
+     * @param metsFile The METS file.
+     * @param href The file's reference (relative to the METS file).
+     * @param checksumType The declared checksum type.
+     * @param checksum The declared checksum.
+     * @param checks The list of checks to add to.
+     * @param errors The list of errors to add to.
+     */
+    private void addCheck(Path metsFile, String href, String checksumType, String checksum, List<FileCheck> checks, List<FixityError> errors) {
+        if (href == null || href.isBlank()) {
+            return;
+        }
+        String algorithm = (checksumType == null)?null:ALGORITHMS.get(checksumType.toUpperCase(Locale.ROOT));
+        if (algorithm == null) {
+            LOG.debug("Skipping fixity verification of {} in {} for unsupported checksum type {}", href, metsFile, checksumType);
+            return;
+        }
+        String reference = href.trim();
+        if (reference.startsWith("file:")) {
+            reference = reference.substring(5);
+        }
+        if (reference.indexOf('%') >= 0) {
+            try {
+                reference = URLDecoder.decode(reference.replace("+", "%2B"), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                // Not URL-encoded - use the reference as-is.
+            }
+        }
+        Path resolved = metsFile.getParent().resolve(reference);
+        // Check the path before normalising it, as normalisation silently drops ".." segments leading above the root.
+        boolean outsideArchive = reference.startsWith("/");
+        int depth = 0;
+        for (Path name: resolved) {
+            if ("..".equals(name.toString())) {
+                outsideArchive |= --depth < 0;
+            } else if (!".".equals(name.toString())) {
+                depth += 1;
+            }
+        }
+        Path target = resolved.normalize();
+        if (outsideArchive) {
+            errors.add(new FixityError(toLocation(metsFile), String.format("The file reference '%s' declared in '%s' is not a relative path within the archive.", href, toLocation(metsFile))));
+        } else if (!Files.isRegularFile(target)) {
+            errors.add(new FixityError(toLocation(target), String.format("The file '%s' declared in '%s' was not found in the archive.", toLocation(target), toLocation(metsFile))));
+        } else {
+            checks.add(new FileCheck(metsFile, target, algorithm, checksum.trim().toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Verify the checksum of a single file.
+     *
+     * @param check The check to carry out.
+     * @return The resulting error (null if the checksum matches).
+     */
+    private static FixityError verify(FileCheck check) {
+        try (SeekableByteChannel channel = Files.newByteChannel(check.file)) {
+            MessageDigest digest = MessageDigest.getInstance(check.algorithm);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            String actual = HexFormat.of().formatHex(digest.digest());
+            if (!actual.equals(check.expected)) {
+                return new FixityError(toLocation(check.file), String.format("The %s checksum of file '%s' does not match the one declared in '%s' (expected %s but was %s).", check.algorithm, toLocation(check.file), toLocation(check.metsFile), check.expected, actual));
+            }
+            return null;
+        } catch (IOException e) {
+            return new FixityError(toLocation(check.file), String.format("The file '%s' declared in '%s' could not be read to verify its checksum.", toLocation(check.file), toLocation(check.metsFile)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unsupported digest algorithm " + check.algorithm, e);
+        }
+    }
+
+    /**
+     * Convert a path within the archive to a location to report.
+     *
+     * @param path The path.
+     * @return The location.
+     */
+    private static String toLocation(Path path) {
+        String location = path.toString();
+        return location.startsWith("/")?location.substring(1):location;
+    }
+
+    /**
+     * The verification of a file's declared checksum.
+     */
+    private static class FileCheck {
+
+        private final Path metsFile;
+        private final Path file;
+        private final String algorithm;
+        private final String expected;
+
+        FileCheck(Path metsFile, Path file, String algorithm, String expected) {
+            this.metsFile = metsFile;
+            this.file = file;
+            this.algorithm = algorithm;
+            this.expected = expected;
+        }
+    }
+
+    /**
+     * Fork-join task verifying a range of file checks by splitting it until single files remain.
+     */
+    private static class ChecksumTask extends RecursiveTask<List<FixityError>> {
+
+        private final List<FileCheck> checks;
+        private final int from;
+        private final int to;
+        private final ValidationContext context;
+
+        ChecksumTask(List<FileCheck> checks, int from, int to, ValidationContext context) {
+            this.checks = checks;
+            this.from = from;
+            this.to = to;
+            this.context = context;
+        }
+
+        @Override
+        protected List<FixityError> compute() {
+            List<FixityError> errors = new ArrayList<>();
+            if (to - from == 1) {
+                // Once the deadline has passed remaining files are skipped (the caller then fails the request).
+                if (!context.isExpired()) {
+                    FixityError error = verify(checks.get(from));
+                    if (error != null) {
+                        errors.add(error);
+                    }
+                }
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChecksumTask left = new ChecksumTask(checks, from, middle, context);
+                left.fork();
+                errors.addAll(new ChecksumTask(checks, middle, to, context).compute());
+                errors.addAll(0, left.join());
+            }
+            return errors;
+        }
+    }
+
+}
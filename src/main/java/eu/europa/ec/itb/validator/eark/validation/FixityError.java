@@ -0,0 +1,29 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+/**
+ * POJO to hold a problem found while locally verifying the checksums declared in an archive's METS files.
+ */
+public class FixityError {
+
+    private final String location;
+    private final String message;
+
+    /**
+     * Constructor.
+     *
+     * @param location The path within the archive of the file concerned.
+     * @param message The error's description.
+     */
+    public FixityError(String location, String message) {
+        this.location = location;
+        this.message = message;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,130 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The context of a single validation request, identifying it and carrying the deadline by which it must complete as
+ * well as information on the request used for monitoring.
+ *
+ * All processing steps (writing the archive, backend calls) are expected to check the remaining time and to stop as
+ * soon as the deadline has passed, so that no work is done for results that nobody will read.
+ */
+public class ValidationContext {
+
+    private final String id;
+    private final String operation;
+    private final long deadline;
+    private String digest;
+    private long archiveSize = -1;
+    private boolean fullReport;
+
+    /**
+     * Constructor.
+     *
+     * @param operation The operation being carried out.
+     * @param timeout The time allowed for the request to complete.
+     */
+    public ValidationContext(String operation, Duration timeout) {
+        this.id = UUID.randomUUID().toString();
+        this.operation = operation;
+        this.deadline = System.nanoTime() + timeout.toNanos();
+    }
+
+    /**
+     * @return The request's unique identifier.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return The operation being carried out.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return The digest provided for the archive (null if not applicable).
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @param digest The digest provided for the archive.
+     */
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * @return The archive's size in bytes (negative if not known).
+     */
+    public long getArchiveSize() {
+        return archiveSize;
+    }
+
+    /**
+     * @param archiveSize The archive's size in bytes.
+     */
+    public void setArchiveSize(long archiveSize) {
+        this.archiveSize = archiveSize;
+    }
+
+    /**
+     * @return True if the report should include all items without aggregation or truncation.
+     */
+    public boolean isFullReport() {
+        return fullReport;
+    }
+
+    /**
+     * @param fullReport True if the report should include all items without aggregation or truncation.
+     */
+    public void setFullReport(boolean fullReport) {
+        this.fullReport = fullReport;
+    }
+
+    /**
+     * @return The time left until the deadline in milliseconds (zero or negative if expired).
+     */
+    public long getRemainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+    }
+
+    /**
+     * @return True if the deadline has passed.
+     */
+    public boolean isExpired() {
+        return deadline - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Fail if the deadline has passed.
+     *
+     * @param activity A description of the activity about to be carried out (used in the error message).
+     * @throws DeadlineExceededException If the deadline has passed.
+     */
+    public void checkDeadline(String activity) {
+        if (isExpired()) {
+            throw new DeadlineExceededException(String.format("Deadline exceeded before %s", activity));
+        }
+    }
+
+    /**
+     * Schedule an action to be carried out if the deadline passes (e.g. to abort a blocking call).
+     *
+     * @param scheduler The scheduler to use.
+     * @param action The action.
+     * @return The scheduled action's handle, to be cancelled when the guarded operation completes.
+     */
+    public ScheduledFuture<?> onExpiry(ScheduledExecutorService scheduler, Runnable action) {
+        return scheduler.schedule(action, Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+    }
+
+}
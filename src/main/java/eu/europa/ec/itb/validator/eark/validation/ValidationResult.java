@@ -1,16 +1,24 @@
 package eu.europa.ec.itb.validator.eark.validation;
 
+import java.util.List;
+
 /**
- * A wrapper class for the results of both backend service calls.
+ * A wrapper class for the results of both backend service calls and of the local fixity verification.
  */
 public class ValidationResult {
 
     private UploadResult uploadResult;
     private ValidationReport validationReport;
+    private List<FixityError> fixityErrors;
 
     public ValidationResult(UploadResult uploadResult, ValidationReport validationReport) {
+        this(uploadResult, validationReport, null);
+    }
+
+    public ValidationResult(UploadResult uploadResult, ValidationReport validationReport, List<FixityError> fixityErrors) {
         this.uploadResult = uploadResult;
         this.validationReport = validationReport;
+        this.fixityErrors = fixityErrors;
     }
 
     public UploadResult getUploadResult() {
@@ -20,4 +28,8 @@ public class ValidationResult {
     public ValidationReport getValidationReport() {
         return validationReport;
     }
+
+    public List<FixityError> getFixityErrors() {
+        return fixityErrors;
+    }
 }
@@ -1,17 +1,23 @@
 package eu.europa.ec.itb.validator.eark.validation;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.itb.validator.eark.jfr.ArchiveSpoolEvent;
+import eu.europa.ec.itb.validator.eark.jfr.JsonParseEvent;
+import eu.europa.ec.itb.validator.eark.jfr.ReportDownloadEvent;
+import eu.europa.ec.itb.validator.eark.jfr.UploadEvent;
+import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
@@ -19,68 +25,193 @@ import org.springframework.stereotype.Component;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Class that implements the validator's logic.
  *
- * This implementation forwards the provided archive and digest hash to the backend validator's REST API.
+ * This implementation forwards the provided archive and digest hash to the backend validator's REST API. When multiple
+ * backend instances are configured, the instance to use is determined by the {@link BackendSelector}. If enabled, the
+ * checksums declared in the archive's METS files are also verified locally by the {@link FixityChecker}.
  */
 @Component
 public class Validator {
 
-    @Value("${validator.backendEndpoint}")
-    private String backendEndpoint;
+    /** Buffer size used when writing archives. */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     @Value("${validator.forceHttps:false}")
     private boolean forceHttps;
 
+    @Value("${validator.timeout:300}")
+    private long timeoutSeconds;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private BackendSelector backendSelector;
+
+    @Autowired
+    private FixityChecker fixityChecker;
+
+    @Autowired
+    private CloseableHttpClient httpClient;
+
+    @Autowired
+    private ScheduledExecutorService deadlineScheduler;
+
+    /**
+     * Create the context for a new validation request.
+     *
+     * @param operation The operation to carry out.
+     * @param requestedTimeout The timeout in seconds requested by the caller (optional). This is capped by the
+     *                         configured timeout which also applies if no timeout is requested.
+     * @return The context.
+     */
+    public ValidationContext createContext(String operation, String requestedTimeout) {
+        long timeout = timeoutSeconds;
+        if (requestedTimeout != null && !requestedTimeout.isBlank()) {
+            try {
+                long requested = Long.parseLong(requestedTimeout.trim());
+                if (requested <= 0) {
+                    throw new IllegalArgumentException("The requested timeout must be a positive number of seconds");
+                }
+                timeout = Math.min(requested, timeoutSeconds);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Invalid timeout '%s' (expected a number of seconds)", requestedTimeout), e);
+            }
+        }
+        return new ValidationContext(operation, Duration.ofSeconds(timeout));
+    }
+
+    /**
+     * Write a received archive to the file system, stopping if the request's deadline passes.
+     *
+     * @param content The archive's content.
+     * @param archive The file to write to.
+     * @param context The request's context.
+     */
+    public void writeArchive(InputStream content, File archive, ValidationContext context) {
+        context.checkDeadline("writing the archive");
+        archive.getParentFile().mkdirs();
+        ArchiveSpoolEvent event = new ArchiveSpoolEvent();
+        event.begin();
+        long size = 0;
+        try (InputStream in = content; OutputStream out = Files.newOutputStream(archive.toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                size += read;
+                context.checkDeadline("completing the archive's writing");
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write archive to file system", e);
+        } finally {
+            context.setArchiveSize(size);
+            event.complete(context, null, 1);
+        }
+    }
+
     /**
      * Validate the input.
      *
      * @param archive The archive to validate.
      * @param digest The archive's hash value.
+     * @param context The request's context.
      * @return The result of the validation.
      */
-    public ValidationResult uploadAndValidate(File archive, String digest) {
-        UploadResult uploadResult = uploadInternal(archive, digest);
+    public ValidationResult uploadAndValidate(File archive, String digest, ValidationContext context) {
+        List<FixityError> fixityErrors = checkFixity(archive, context);
+        UploadResult uploadResult = uploadInternal(archive, digest, context);
         ValidationReport report = null;
         if (uploadResult.getValidationUrl() != null && !uploadResult.getValidationUrl().isBlank()) {
-            report = validateInternal(uploadResult.getValidationUrl());
+            report = validateInternal(uploadResult.getValidationUrl(), context);
         }
-        return new ValidationResult(uploadResult, report);
+        return new ValidationResult(uploadResult, report, fixityErrors);
     }
 
-    public ValidationResult upload(File archive, String digest) {
-        UploadResult uploadResult = uploadInternal(archive, digest);
-        return new ValidationResult(uploadResult, null);
+    public ValidationResult upload(File archive, String digest, ValidationContext context) {
+        List<FixityError> fixityErrors = checkFixity(archive, context);
+        UploadResult uploadResult = uploadInternal(archive, digest, context);
+        return new ValidationResult(uploadResult, null, fixityErrors);
     }
 
-    public ValidationResult validate(String reportUrl) {
-        ValidationReport report = validateInternal(reportUrl);
+    public ValidationResult validate(String reportUrl, ValidationContext context) {
+        ValidationReport report = validateInternal(reportUrl, context);
         return new ValidationResult(null, report);
     }
 
+    /**
+     * Exercise the code paths used to call the backend so that the first real request does not pay for their
+     * initialisation. No calls are made to the backend instances.
+     *
+     * @param context The context to use.
+     * @throws IOException If the sample upload cannot be prepared.
+     */
+    public void warmUp(ValidationContext context) throws IOException {
+        File sample = File.createTempFile("warmUp", ".zip");
+        try {
+            HttpPost request = new HttpPost(backendSelector.select().getEndpoint());
+            request.setEntity(createUploadEntity(sample, "0"));
+            configureTimeouts(request, context);
+            request.getEntity().writeTo(OutputStream.nullOutputStream());
+        } finally {
+            FileUtils.deleteQuietly(sample);
+        }
+    }
+
+    /**
+     * Verify locally the checksums declared in the archive's METS files (if enabled).
+     *
+     * @param archive The archive.
+     * @param context The request's context.
+     * @return The fixity errors (null if the verification is disabled).
+     */
+    private List<FixityError> checkFixity(File archive, ValidationContext context) {
+        if (fixityChecker.isEnabled()) {
+            return fixityChecker.check(archive, context);
+        }
+        return null;
+    }
+
     /**
      * Make the second call to get the validation report.
      *
      * @param reportUrl The URL to call.
+     * @param context The request's context.
      * @return The report.
      */
-    private ValidationReport validateInternal(String reportUrl) {
+    private ValidationReport validateInternal(String reportUrl, ValidationContext context) {
         if (forceHttps && reportUrl.startsWith("http://")) {
             reportUrl = "https" + reportUrl.substring(4);
         }
         HttpGet reportRequest = new HttpGet(reportUrl);
-        HttpClient client = HttpClientBuilder.create().build();
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            HttpResponse response = client.execute(reportRequest);
-            response.getEntity().writeTo(bos);
-            String receivedResult = new String(bos.toByteArray(), StandardCharsets.UTF_8);
-            return objectMapper.readValue(receivedResult, ValidationReport.class);
+        // Report URLs are always resolved against the instance that issued them.
+        Backend backend = backendSelector.forUrl(reportUrl);
+        String backendEndpoint = (backend == null)?null:backend.getEndpoint();
+        try {
+            String response;
+            ReportDownloadEvent downloadEvent = new ReportDownloadEvent();
+            downloadEvent.begin();
+            try {
+                response = execute(reportRequest, backend, false, context);
+            } finally {
+                downloadEvent.complete(context, backendEndpoint, 1);
+            }
+            JsonParseEvent parseEvent = new JsonParseEvent();
+            parseEvent.begin();
+            ValidationReport report = objectMapper.readValue(response, ValidationReport.class);
+            parseEvent.complete(context, backendEndpoint, countItems(report));
+            return report;
         } catch (IOException e) {
             throw new IllegalStateException("An error occurred while downloading the archive's validation report", e);
         }
@@ -91,25 +222,121 @@ public class Validator {
      *
      * @param archive The archive.
      * @param digest The archive's digest.
+     * @param context The request's context.
      * @return The result of the call.
      */
-    private UploadResult uploadInternal(File archive, String digest) {
-        HttpEntity uploadEntity = MultipartEntityBuilder.create()
+    private UploadResult uploadInternal(File archive, String digest, ValidationContext context) {
+        HttpEntity uploadEntity = createUploadEntity(archive, digest);
+        Backend backend = backendSelector.select();
+        HttpPost uploadRequest = new HttpPost(backend.getEndpoint());
+        uploadRequest.setEntity(uploadEntity);
+        try {
+            String response;
+            UploadEvent uploadEvent = new UploadEvent();
+            uploadEvent.begin();
+            try {
+                response = execute(uploadRequest, backend, true, context);
+            } finally {
+                uploadEvent.complete(context, backend.getEndpoint(), 1);
+            }
+            JsonParseEvent parseEvent = new JsonParseEvent();
+            parseEvent.begin();
+            UploadResult result = objectMapper.readValue(response, UploadResult.class);
+            parseEvent.complete(context, backend.getEndpoint(), 1);
+            return result;
+        } catch (IOException e) {
+            throw new IllegalStateException("An error occurred while uploading the archive for validation", e);
+        }
+    }
+
+    /**
+     * Create the multipart entity to upload an archive.
+     *
+     * @param archive The archive.
+     * @param digest The archive's digest.
+     * @return The entity.
+     */
+    private HttpEntity createUploadEntity(File archive, String digest) {
+        return MultipartEntityBuilder.create()
                 .setMode(HttpMultipartMode.RFC6532)
                 .addPart("package", new FileBody(archive, ContentType.DEFAULT_BINARY))
                 .addPart("digest", new StringBody(digest, ContentType.MULTIPART_FORM_DATA))
                 .build();
-        HttpPost uploadRequest = new HttpPost(backendEndpoint);
-        uploadRequest.setEntity(uploadEntity);
-        HttpClient client = HttpClientBuilder.create().build();
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            HttpResponse response = client.execute(uploadRequest);
+    }
+
+    /**
+     * Set the timeouts of a request to the time remaining for the validation request.
+     *
+     * @param request The request to configure.
+     * @param context The request's context.
+     */
+    private void configureTimeouts(HttpRequestBase request, ValidationContext context) {
+        // Round up so that a timeout only fires once the deadline has passed and is treated as the caller's abort.
+        int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, context.getRemainingMillis() + 1));
+        request.setConfig(RequestConfig.custom()
+                .setConnectionRequestTimeout(remaining)
+                .setConnectTimeout(remaining)
+                .setSocketTimeout(remaining)
+                .build());
+    }
+
+    /**
+     * Execute a call to a backend instance, recording its outcome for the instance's health and load statistics.
+     *
+     * Connection errors and server errors (5xx) count as failures. The call's timeouts are set to the time remaining
+     * for the request and the call is aborted if the request's deadline passes while it is in progress. Such aborts
+     * reflect the caller's budget rather than the backend's health, so they are not recorded as failures.
+     *
+     * @param request The request to make.
+     * @param backend The backend instance the request targets (null if not a configured instance).
+     * @param upload Whether the request is an upload (as opposed to a report download).
+     * @param context The request's context.
+     * @return The response body.
+     * @throws IOException If the call fails.
+     * @throws DeadlineExceededException If the request's deadline passes before the call completes.
+     */
+    private String execute(HttpRequestBase request, Backend backend, boolean upload, ValidationContext context) throws IOException {
+        context.checkDeadline("calling the backend validator");
+        configureTimeouts(request, context);
+        ScheduledFuture<?> abort = context.onExpiry(deadlineScheduler, request::abort);
+        long start = backendSelector.callStarted(backend);
+        boolean success = false;
+        boolean abandoned = false;
+        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(); CloseableHttpResponse response = httpClient.execute(request)) {
+            success = response.getStatusLine().getStatusCode() < 500;
             response.getEntity().writeTo(bos);
-            String receivedResult = new String(bos.toByteArray(), StandardCharsets.UTF_8);
-            return objectMapper.readValue(receivedResult, UploadResult.class);
+            return new String(bos.toByteArray(), StandardCharsets.UTF_8);
         } catch (IOException e) {
-            throw new IllegalStateException("An error occurred while uploading the archive for validation", e);
+            success = false;
+            if (context.isExpired()) {
+                abandoned = true;
+                throw new DeadlineExceededException("Deadline exceeded while calling the backend validator", e);
+            }
+            throw e;
+        } finally {
+            abort.cancel(false);
+            if (abandoned) {
+                backendSelector.callAbandoned(backend);
+            } else {
+                backendSelector.callCompleted(backend, start, success, upload);
+            }
+        }
+    }
+
+    /**
+     * Count the items of a validation report.
+     *
+     * @param report The report.
+     * @return The number of schema errors, profile errors and profile warnings.
+     */
+    private int countItems(ValidationReport report) {
+        int count = 0;
+        if (report != null) {
+            count += (report.getSchemaErrors() == null)?0:report.getSchemaErrors().length;
+            count += (report.getProfileErrors() == null)?0:report.getProfileErrors().length;
+            count += (report.getProfileWarnings() == null)?0:report.getProfileWarnings().length;
         }
+        return count;
     }
 
 }
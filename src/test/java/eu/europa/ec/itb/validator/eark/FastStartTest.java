@@ -0,0 +1,192 @@
+package eu.europa.ec.itb.validator.eark;
+
+import com.gitb.core.AnyContent;
+import com.gitb.core.ValueEmbeddingEnumeration;
+import com.gitb.tr.TestResultType;
+import com.gitb.vs.ValidateRequest;
+import com.gitb.vs.ValidationResponse;
+import com.gitb.vs.ValidationService;
+import com.sun.net.httpserver.HttpServer;
+import eu.europa.ec.itb.validator.eark.gitb.ValidationServiceImpl;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Test measuring the startup time and the latency of the first validation request when running with the fast-start
+ * profile.
+ *
+ * The application is started in a separate JVM so that the measurement reflects a cold start, regardless of the classes
+ * already loaded by other tests. The first request retrieves a validation report (operation "report") from a stub
+ * backend validator, going through the backend call, JSON parsing, report mapping and SOAP marshalling paths that the
+ * warm-up targets. The AppCDS archive is not used as it requires a classpath of JAR files (its use is verified when
+ * building the fast-start image).
+ */
+public class FastStartTest {
+
+    /** Logger. **/
+    private static final Logger LOG = LoggerFactory.getLogger(FastStartTest.class);
+    /** The maximum time to wait for the application to start. */
+    private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    /** Validation report returned by the stub backend validator. */
+    private static final String STUB_REPORT = "{\"metadata_valid\":false,\"schema_valid\":true,\"schema_errors\":[]," +
+            "\"profile_errors\":[{\"location\":\"METS.xml\",\"message\":\"Missing attribute\",\"rule_id\":\"CSIP1\",\"severity\":\"Error\",\"test\":\"Stub\"}]," +
+            "\"profile_warnings\":[{\"location\":\"METS.xml\",\"message\":\"Missing element\",\"rule_id\":\"CSIP2\",\"severity\":\"Warn\",\"test\":\"Stub\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Start the application with the fast-start profile in a new JVM and make its first validation request.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void startupAndFirstRequestLatency() throws Exception {
+        HttpServer backend = startStubBackend();
+        String backendAddress = "http://localhost:" + backend.getAddress().getPort();
+        int port = freePort();
+        Path output = tempDir.resolve("application.log");
+        Process application = null;
+        try {
+            long startupStart = System.nanoTime();
+            application = new ProcessBuilder(List.of(
+                    Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", System.getProperty("java.class.path"),
+                    Application.class.getName(),
+                    "--spring.profiles.active=fast-start",
+                    "--server.port=" + port,
+                    "--validator.backendEndpoint=" + backendAddress + "/api/ip/package/",
+                    "--validator.forceHttps=false"))
+                    .redirectErrorStream(true)
+                    .redirectOutput(output.toFile())
+                    .start();
+            awaitStartup(application, output);
+            long startupTime = System.nanoTime() - startupStart;
+            assertTrue(Files.readString(output).contains("Warm-up completed"), "The warm-up did not run");
+            JaxWsProxyFactoryBean clientFactory = new JaxWsProxyFactoryBean();
+            clientFactory.setServiceClass(ValidationService.class);
+            clientFactory.setAddress("http://localhost:" + port + "/services/validation");
+            ValidationService client = (ValidationService) clientFactory.create();
+            ValidateRequest request = createReportRequest(backendAddress + "/api/ip/validation/stub");
+            long requestStart = System.nanoTime();
+            ValidationResponse response = client.validate(request);
+            long firstRequestTime = System.nanoTime() - requestStart;
+            requestStart = System.nanoTime();
+            client.validate(request);
+            long secondRequestTime = System.nanoTime() - requestStart;
+            LOG.info("Startup time: {} ms, first validation latency: {} ms, second validation latency: {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(startupTime),
+                    TimeUnit.NANOSECONDS.toMillis(firstRequestTime),
+                    TimeUnit.NANOSECONDS.toMillis(secondRequestTime));
+            assertNotNull(response.getReport());
+            assertEquals(TestResultType.FAILURE, response.getReport().getResult());
+            assertEquals(1, response.getReport().getCounters().getNrOfErrors().intValue());
+            assertEquals(1, response.getReport().getCounters().getNrOfWarnings().intValue());
+        } finally {
+            if (application != null) {
+                application.destroyForcibly().waitFor(30, TimeUnit.SECONDS);
+            }
+            backend.stop(0);
+        }
+    }
+
+    /**
+     * Wait until the application reports that it has started (and is therefore accepting requests).
+     *
+     * @param application The application's process.
+     * @param output The file receiving the application's output.
+     * @throws Exception If the application fails to start in time.
+     */
+    private void awaitStartup(Process application, Path output) throws Exception {
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (Files.exists(output) && Files.readString(output).contains("Started Application")) {
+                return;
+            }
+            if (!application.isAlive()) {
+                fail("The application exited with code " + application.exitValue() + ":\n" + Files.readString(output));
+            }
+            Thread.sleep(20);
+        }
+        fail("The application did not start in time:\n" + Files.readString(output));
+    }
+
+    /**
+     * Start a stub backend validator returning the same validation report for all requests.
+     *
+     * @return The stub's server.
+     * @throws IOException If the server cannot be started.
+     */
+    private HttpServer startStubBackend() throws IOException {
+        HttpServer backend = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        backend.createContext("/", exchange -> {
+            byte[] body = STUB_REPORT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        backend.start();
+        return backend;
+    }
+
+    /**
+     * @return A currently free local port.
+     * @throws IOException If no port can be obtained.
+     */
+    private int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Create a validation request retrieving the report at the provided URL.
+     *
+     * @param reportUrl The report URL.
+     * @return The request.
+     */
+    private ValidateRequest createReportRequest(String reportUrl) {
+        ValidateRequest request = new ValidateRequest();
+        request.getInput().add(createInput(ValidationServiceImpl.INPUT__OPERATION, ValidationServiceImpl.OPERATION__REPORT));
+        request.getInput().add(createInput(ValidationServiceImpl.INPUT__REPORT_URL, reportUrl));
+        return request;
+    }
+
+    /**
+     * Create a string input.
+     *
+     * @param name The input's name.
+     * @param value The input's value.
+     * @return The input.
+     */
+    private AnyContent createInput(String name, String value) {
+        AnyContent input = new AnyContent();
+        input.setName(name);
+        input.setValue(value);
+        input.setEmbeddingMethod(ValueEmbeddingEnumeration.STRING);
+        return input;
+    }
+
+}
@@ -0,0 +1,129 @@
+package eu.europa.ec.itb.validator.eark.gitb;
+
+import com.gitb.vs.GetModuleDefinitionResponse;
+import com.gitb.vs.ValidationService;
+import com.gitb.vs.Void;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.cxf.feature.Feature;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.apache.cxf.transport.common.gzip.GZIPFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Integration tests for the GZIP encoding of SOAP requests and responses.
+ *
+ * The compression threshold is lowered so that getModuleDefinition responses exceed it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "validator.compressionThreshold=100")
+public class CompressionTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private EncodingRecorder recorder;
+
+    /**
+     * Test that GZIP-encoded requests are accepted and that responses are compressed for clients accepting GZIP.
+     */
+    @Test
+    public void acceptsAndReturnsCompressedMessages() {
+        GZIPFeature compression = new GZIPFeature();
+        // Compress all requests, regardless of their size.
+        compression.setForce(true);
+        compression.setThreshold(0);
+        GetModuleDefinitionResponse response = createClient(compression).getModuleDefinition(new Void());
+        assertEquals("eArkValidator", response.getModule().getId());
+        assertEquals("gzip", recorder.requestEncoding);
+        assertEquals("gzip", recorder.responseEncoding);
+    }
+
+    /**
+     * Test that responses are not compressed for clients not accepting GZIP.
+     */
+    @Test
+    public void returnsUncompressedMessagesByDefault() {
+        GetModuleDefinitionResponse response = createClient().getModuleDefinition(new Void());
+        assertEquals("eArkValidator", response.getModule().getId());
+        assertNull(recorder.requestEncoding);
+        assertNull(recorder.responseEncoding);
+    }
+
+    /**
+     * Create a client for the validation service.
+     *
+     * @param features The client's features.
+     * @return The client.
+     */
+    private ValidationService createClient(Feature... features) {
+        JaxWsProxyFactoryBean clientFactory = new JaxWsProxyFactoryBean();
+        clientFactory.setServiceClass(ValidationService.class);
+        clientFactory.setAddress("http://localhost:" + port + "/services/validation");
+        for (Feature feature: features) {
+            clientFactory.getFeatures().add(feature);
+        }
+        return (ValidationService) clientFactory.create();
+    }
+
+    /**
+     * Configuration registering the filter that records the encoding of the service's messages.
+     */
+    @TestConfiguration
+    static class RecorderConfig {
+
+        /**
+         * @return The filter recording the encoding of the service's messages.
+         */
+        @Bean
+        public EncodingRecorder encodingRecorder() {
+            return new EncodingRecorder();
+        }
+
+    }
+
+    /**
+     * Servlet filter recording the content encoding of the last SOAP request and of its response.
+     */
+    static class EncodingRecorder implements Filter {
+
+        volatile String requestEncoding;
+        volatile String responseEncoding;
+
+        /**
+         * Process the request and record its encoding and that of its response.
+         *
+         * @param request The request.
+         * @param response The response.
+         * @param chain The filter chain.
+         * @throws IOException If an IO error occurs.
+         * @throws ServletException If a servlet error occurs.
+         */
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+            chain.doFilter(request, response);
+            if ("POST".equals(((HttpServletRequest) request).getMethod())) {
+                requestEncoding = ((HttpServletRequest) request).getHeader(HttpHeaders.CONTENT_ENCODING);
+                responseEncoding = ((HttpServletResponse) response).getHeader(HttpHeaders.CONTENT_ENCODING);
+            }
+        }
+
+    }
+
+}
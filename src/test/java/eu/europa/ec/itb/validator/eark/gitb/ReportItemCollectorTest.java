@@ -0,0 +1,99 @@
+package eu.europa.ec.itb.validator.eark.gitb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the aggregation and truncation of report items.
+ */
+public class ReportItemCollectorTest {
+
+    /**
+     * Test that items are grouped only if their severity, rule and message all match.
+     */
+    @Test
+    public void groupsBySeverityRuleAndMessage() {
+        ReportItemCollector collector = new ReportItemCollector(true, 0, 5);
+        collector.add(false, "Missing attribute", "Test", "CSIP1", "a/METS.xml");
+        collector.add(false, "Missing attribute", "Test", "CSIP1", "b/METS.xml");
+        collector.add(true, "Missing attribute", "Test", "CSIP1", "c/METS.xml");
+        collector.add(false, "Missing attribute", "Test", "CSIP2", "d/METS.xml");
+        collector.add(false, "Invalid attribute", "Test", "CSIP1", "e/METS.xml");
+        List<ReportItemCollector.Item> items = collector.getItems();
+        assertEquals(4, items.size());
+        assertEquals(2, items.get(0).getOccurrences());
+        assertEquals(List.of("a/METS.xml", "b/METS.xml"), items.get(0).getLocations());
+        assertTrue(items.get(1).isWarning());
+        assertEquals(1, items.get(1).getOccurrences());
+        assertEquals("CSIP2", items.get(2).getRuleId());
+        assertEquals("Invalid attribute", items.get(3).getMessage());
+        assertEquals(0, collector.getOmittedCount());
+    }
+
+    /**
+     * Test that the locations listed for a group are bounded while all occurrences are counted.
+     */
+    @Test
+    public void boundsLocationSamples() {
+        ReportItemCollector collector = new ReportItemCollector(true, 0, 2);
+        for (int i = 0; i < 10; i++) {
+            collector.add(false, "Missing attribute", null, "CSIP1", "METS" + i + ".xml");
+        }
+        collector.add(false, "Missing attribute", null, "CSIP1", null);
+        assertEquals(1, collector.getItems().size());
+        assertEquals(11, collector.getItems().get(0).getOccurrences());
+        assertEquals(List.of("METS0.xml", "METS1.xml"), collector.getItems().get(0).getLocations());
+    }
+
+    /**
+     * Test that items beyond the maximum are counted as omitted, including items matching an omitted group.
+     */
+    @Test
+    public void countsOmittedItems() {
+        ReportItemCollector collector = new ReportItemCollector(true, 2, 5);
+        collector.add(false, "First", null, "CSIP1", null);
+        collector.add(false, "Second", null, "CSIP2", null);
+        collector.add(false, "First", null, "CSIP1", null);
+        collector.add(false, "Third", null, "CSIP3", null);
+        collector.add(false, "Third", null, "CSIP3", null);
+        assertEquals(2, collector.getItems().size());
+        assertEquals(2, collector.getItems().get(0).getOccurrences());
+        assertEquals(2, collector.getOmittedCount());
+    }
+
+    /**
+     * Test that without aggregation and maximum all items are kept as-is.
+     */
+    @Test
+    public void keepsAllItemsWithoutAggregationOrMaximum() {
+        ReportItemCollector collector = new ReportItemCollector(false, 0, 5);
+        for (int i = 0; i < 100; i++) {
+            collector.add(i % 2 == 0, "Missing attribute", null, "CSIP1", "METS.xml");
+        }
+        assertEquals(100, collector.getItems().size());
+        assertFalse(collector.getItems().stream().anyMatch(item -> item.getOccurrences() != 1));
+        assertEquals(0, collector.getOmittedCount());
+    }
+
+    /**
+     * Test that a collector with a sink passes all items to it in order without storing them.
+     */
+    @Test
+    public void passesItemsToSink() {
+        List<String> received = new ArrayList<>();
+        ReportItemCollector collector = new ReportItemCollector((warning, message, test, ruleId, location) -> received.add((warning?"W":"E") + "|" + ruleId + "|" + message + "|" + location));
+        collector.add(false, "Missing attribute", "Test", "CSIP1", "a/METS.xml");
+        collector.add(false, "Missing attribute", "Test", "CSIP1", "b/METS.xml");
+        collector.add(true, "Missing element", null, null, null);
+        assertEquals(List.of("E|CSIP1|Missing attribute|a/METS.xml", "E|CSIP1|Missing attribute|b/METS.xml", "W|null|Missing element|null"), received);
+        assertTrue(collector.getItems().isEmpty());
+        assertEquals(0, collector.getOmittedCount());
+    }
+
+}
@@ -0,0 +1,91 @@
+package eu.europa.ec.itb.validator.eark.gitb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitb.core.AnyContent;
+import com.gitb.tr.ObjectFactory;
+import com.gitb.tr.TAR;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import eu.europa.ec.itb.validator.eark.validation.ValidationReport;
+import eu.europa.ec.itb.validator.eark.validation.ValidationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the conversion of validation results to TAR reports.
+ */
+public class ValidationServiceImplTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ValidationServiceImpl service;
+    private ValidationResult result;
+
+    /**
+     * Create a service aggregating items and capping reports to a single item, and a result with repeated items.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        service = new ValidationServiceImpl();
+        ReflectionTestUtils.setField(service, "objectFactory", new ObjectFactory());
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "reportAggregation", true);
+        ReflectionTestUtils.setField(service, "reportMaxItems", 1);
+        ReflectionTestUtils.setField(service, "reportLocationSamples", 5);
+        result = new ValidationResult(null, objectMapper.readValue("{\"metadata_valid\":false,\"schema_valid\":true,\"schema_errors\":[]," +
+                "\"profile_errors\":[" +
+                "{\"location\":\"a/METS.xml\",\"message\":\"Missing attribute\",\"rule_id\":\"CSIP1\",\"severity\":\"Error\",\"test\":\"Test\"}," +
+                "{\"location\":\"b/METS.xml\",\"message\":\"Missing attribute\",\"rule_id\":\"CSIP1\",\"severity\":\"Error\",\"test\":\"Test\"}," +
+                "{\"location\":\"c/METS.xml\",\"message\":\"Missing element\",\"rule_id\":\"CSIP2\",\"severity\":\"Error\",\"test\":\"Test\"}]," +
+                "\"profile_warnings\":[]}", ValidationReport.class));
+    }
+
+    /**
+     * Test that items are aggregated and capped, and that the backend's full report is left out of the context.
+     */
+    @Test
+    public void reducesReport() {
+        TAR report = service.toTAR(result, null, null, "http://localhost/report", new ValidationContext(ValidationServiceImpl.OPERATION__REPORT, Duration.ofMinutes(1)));
+        // One aggregated error and the information item for the omitted one.
+        assertEquals(2, report.getReports().getInfoOrWarningOrError().size());
+        assertEquals(3, report.getCounters().getNrOfErrors().intValue());
+        assertFalse(outputNames(report).contains("validation"));
+    }
+
+    /**
+     * Test that requesting the full report bypasses aggregation and truncation.
+     */
+    @Test
+    public void fullReportBypassesReduction() {
+        ValidationContext context = new ValidationContext(ValidationServiceImpl.OPERATION__REPORT, Duration.ofMinutes(1));
+        context.setFullReport(true);
+        TAR report = service.toTAR(result, null, null, "http://localhost/report", context);
+        assertEquals(3, report.getReports().getInfoOrWarningOrError().size());
+        assertEquals(3, report.getCounters().getNrOfErrors().intValue());
+        assertTrue(outputNames(report).contains("validation"));
+    }
+
+    /**
+     * Get the names of the output values in a report's context.
+     *
+     * @param report The report.
+     * @return The names.
+     */
+    private List<String> outputNames(TAR report) {
+        return report.getContext().getItem().stream()
+                .filter(item -> "output".equals(item.getName()))
+                .flatMap(item -> item.getItem().stream())
+                .map(AnyContent::getName)
+                .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,121 @@
+package eu.europa.ec.itb.validator.eark.jfr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gitb.tr.ObjectFactory;
+import eu.europa.ec.itb.validator.eark.gitb.ValidationServiceImpl;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import eu.europa.ec.itb.validator.eark.validation.ValidationReport;
+import eu.europa.ec.itb.validator.eark.validation.ValidationResult;
+import eu.europa.ec.itb.validator.eark.validation.Validator;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for the Java Flight Recorder events recorded for the validation phases.
+ */
+public class ValidationPhaseEventTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Test that spooling an archive records an event with the request's details and the archive's size.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void recordsArchiveSpool() throws Exception {
+        ValidationContext context = new ValidationContext(ValidationServiceImpl.OPERATION__UPLOAD, Duration.ofMinutes(1));
+        context.setDigest("0123456789abcdef0123456789abcdef01234567");
+        byte[] content = new byte[100 * 1024];
+        List<RecordedEvent> events;
+        try (Recording recording = startRecording(ArchiveSpoolEvent.class)) {
+            new Validator().writeArchive(new ByteArrayInputStream(content), tempDir.resolve("archive.zip").toFile(), context);
+            events = stopRecording(recording, ArchiveSpoolEvent.class);
+        }
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(context.getId(), event.getString("requestId"));
+        assertEquals(ValidationServiceImpl.OPERATION__UPLOAD, event.getString("operation"));
+        assertEquals("01234567", event.getString("digestPrefix"));
+        assertEquals(content.length, event.getLong("archiveSize"));
+    }
+
+    /**
+     * Test that mapping a report records an event with the request's details, leaving the archive's details unset for
+     * an operation that did not receive an archive.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void recordsReportMapping() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ValidationServiceImpl service = new ValidationServiceImpl();
+        ReflectionTestUtils.setField(service, "objectFactory", new ObjectFactory());
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(service, "reportLocationSamples", 5);
+        ValidationResult result = new ValidationResult(null, objectMapper.readValue("{\"metadata_valid\":false,\"schema_valid\":true,\"schema_errors\":[]," +
+                "\"profile_errors\":[{\"location\":\"METS.xml\",\"message\":\"Missing attribute\",\"rule_id\":\"CSIP1\",\"severity\":\"Error\",\"test\":\"Test\"}]," +
+                "\"profile_warnings\":[]}", ValidationReport.class));
+        ValidationContext context = new ValidationContext(ValidationServiceImpl.OPERATION__REPORT, Duration.ofMinutes(1));
+        List<RecordedEvent> events;
+        try (Recording recording = startRecording(ReportMappingEvent.class)) {
+            service.toTAR(result, null, null, "http://localhost/report", context);
+            events = stopRecording(recording, ReportMappingEvent.class);
+        }
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(context.getId(), event.getString("requestId"));
+        assertEquals(ValidationServiceImpl.OPERATION__REPORT, event.getString("operation"));
+        assertNull(event.getString("digestPrefix"));
+        assertEquals(0, event.getLong("archiveSize"));
+        assertEquals(1, event.getInt("itemCount"));
+    }
+
+    /**
+     * Start a recording of the provided event type, regardless of the event's duration.
+     *
+     * @param eventClass The event type.
+     * @return The recording.
+     */
+    private Recording startRecording(Class<? extends Event> eventClass) {
+        Recording recording = new Recording();
+        recording.enable(eventClass).withoutThreshold();
+        recording.start();
+        return recording;
+    }
+
+    /**
+     * Stop a recording and read the recorded events of the provided type.
+     *
+     * @param recording The recording.
+     * @param eventClass The event type.
+     * @return The recorded events.
+     * @throws Exception If the recording cannot be read.
+     */
+    private List<RecordedEvent> stopRecording(Recording recording, Class<? extends Event> eventClass) throws Exception {
+        recording.stop();
+        Path file = tempDir.resolve("recording.jfr");
+        recording.dump(file);
+        String eventName = EventType.getEventType(eventClass).getName();
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> eventName.equals(event.getEventType().getName()))
+                .collect(Collectors.toList());
+    }
+
+}
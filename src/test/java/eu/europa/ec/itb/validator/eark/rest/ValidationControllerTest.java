@@ -0,0 +1,208 @@
+package eu.europa.ec.itb.validator.eark.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eu.europa.ec.itb.validator.eark.gitb.BeanConfig;
+import eu.europa.ec.itb.validator.eark.gitb.ValidationServiceImpl;
+import eu.europa.ec.itb.validator.eark.validation.BackendSelector;
+import eu.europa.ec.itb.validator.eark.validation.DeadlineExceededException;
+import eu.europa.ec.itb.validator.eark.validation.UploadResult;
+import eu.europa.ec.itb.validator.eark.validation.ValidationContext;
+import eu.europa.ec.itb.validator.eark.validation.ValidationReport;
+import eu.europa.ec.itb.validator.eark.validation.ValidationResult;
+import eu.europa.ec.itb.validator.eark.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Unit tests for the REST API, using a mocked validator.
+ */
+@WebMvcTest(ValidationController.class)
+@Import({BeanConfig.class, ValidationServiceImpl.class, BackendSelector.class})
+public class ValidationControllerTest {
+
+    /** A report URL issued by the configured backend (see application.properties). */
+    private static final String BACKEND_REPORT_URL = "https://pyip.openpreservation.org/api/ip/validation/123";
+    private static final String SAMPLE_UPLOAD = "{\"message\":null,\"sha1\":\"0\",\"validation_url\":\"" + BACKEND_REPORT_URL + "\"}";
+    private static final String SAMPLE_REPORT = "{\"metadata_valid\":false,\"schema_valid\":true,\"schema_errors\":[]," +
+            "\"profile_errors\":[{\"location\":\"METS.xml\",\"message\":\"Missing attribute\",\"rule_id\":\"CSIP1\",\"severity\":\"Error\",\"test\":\"Test\"}]," +
+            "\"profile_warnings\":[]}";
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private Validator validator;
+
+    /**
+     * Set up the mocked validator to return sample results.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        when(validator.createContext(anyString(), any())).thenAnswer(invocation -> new ValidationContext(invocation.getArgument(0), Duration.ofMinutes(1)));
+        when(validator.upload(any(), anyString(), any())).thenReturn(new ValidationResult(objectMapper.readValue(SAMPLE_UPLOAD, UploadResult.class), null));
+        when(validator.validate(eq(BACKEND_REPORT_URL), any())).thenReturn(new ValidationResult(null, objectMapper.readValue(SAMPLE_REPORT, ValidationReport.class)));
+    }
+
+    /**
+     * Test that results are returned as JSON by default and for Accept headers preferring JSON.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void returnsJsonByDefault() throws Exception {
+        assertReportFormat(null, MediaType.APPLICATION_JSON);
+        assertReportFormat("*/*", MediaType.APPLICATION_JSON);
+        assertReportFormat("application/json", MediaType.APPLICATION_JSON);
+        assertReportFormat("application/xml;q=0.5, application/json", MediaType.APPLICATION_JSON);
+        assertReportFormat("application/json, application/xml", MediaType.APPLICATION_JSON);
+        assertReportFormat("text/html", MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Test that results are returned as XML TAR reports for Accept headers preferring XML.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void returnsXmlWhenPreferred() throws Exception {
+        assertReportFormat("application/xml", MediaType.APPLICATION_XML);
+        assertReportFormat("text/xml", MediaType.APPLICATION_XML);
+        assertReportFormat("application/json;q=0.5, application/xml", MediaType.APPLICATION_XML);
+        assertReportFormat("application/json;q=0, application/xml;q=0.1", MediaType.APPLICATION_XML);
+        assertReportFormat("text/html, application/xml;q=0.9, */*;q=0.8", MediaType.APPLICATION_XML);
+    }
+
+    /**
+     * Test that the request body is passed unchanged to the validator.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void streamsBodyToValidator() throws Exception {
+        byte[] archive = new byte[300 * 1024];
+        new Random(1).nextBytes(archive);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        doAnswer(invocation -> {
+            try (InputStream in = invocation.getArgument(0)) {
+                in.transferTo(received);
+            }
+            return null;
+        }).when(validator).writeArchive(any(), any(), any());
+        MvcResult result = mvc.perform(post("/api/upload")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(ValidationController.HEADER__DIGEST, "SHA1")
+                        .content(archive))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        assertArrayEquals(archive, received.toByteArray());
+        verify(validator).upload(any(), eq("SHA1"), any());
+    }
+
+    /**
+     * Test that form submissions are rejected without being parsed.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void rejectsFormUploads() throws Exception {
+        mvc.perform(post("/api/upload")
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .content("digest=SHA1&PK..."))
+                .andExpect(status().isUnsupportedMediaType());
+        verify(validator, never()).writeArchive(any(), any(), any());
+    }
+
+    /**
+     * Test that uploads without a digest are rejected.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void rejectsUploadWithoutDigest() throws Exception {
+        mvc.perform(post("/api/upload")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[] {1, 2, 3}))
+                .andExpect(status().isBadRequest());
+        verify(validator, never()).writeArchive(any(), any(), any());
+    }
+
+    /**
+     * Test that report URLs not pointing to a configured backend are rejected.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void rejectsReportUrlOfOtherHost() throws Exception {
+        mvc.perform(get("/api/report").param(ValidationController.PARAM__REPORT_URL, "http://169.254.169.254/latest/meta-data/"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/report").param(ValidationController.PARAM__REPORT_URL, "file:///etc/passwd"))
+                .andExpect(status().isBadRequest());
+        verify(validator, never()).validate(anyString(), any());
+    }
+
+    /**
+     * Test that requests abandoned on their deadline result in gateway timeout responses.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void mapsDeadlineToGatewayTimeout() throws Exception {
+        when(validator.validate(eq(BACKEND_REPORT_URL), any())).thenThrow(new DeadlineExceededException("Deadline exceeded while calling the backend validator"));
+        mvc.perform(get("/api/report").param(ValidationController.PARAM__REPORT_URL, BACKEND_REPORT_URL))
+                .andExpect(status().isGatewayTimeout());
+    }
+
+    /**
+     * Retrieve a report with the provided Accept header and check the response's format.
+     *
+     * @param accept The Accept header (null for none).
+     * @param expectedType The expected content type.
+     * @throws Exception If an unexpected error occurs.
+     */
+    private void assertReportFormat(String accept, MediaType expectedType) throws Exception {
+        MockHttpServletRequestBuilder reportRequest = get("/api/report").param(ValidationController.PARAM__REPORT_URL, BACKEND_REPORT_URL);
+        if (accept != null) {
+            reportRequest.header(HttpHeaders.ACCEPT, accept);
+        }
+        MvcResult result = mvc.perform(reportRequest).andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(expectedType));
+    }
+
+}
@@ -0,0 +1,188 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the selection of backend validator instances.
+ */
+public class BackendSelectorTest {
+
+    private static final String ENDPOINT_1 = "http://backend1:8001/api/ip/package/";
+    private static final String ENDPOINT_2 = "http://backend2:8002/api/ip/package/";
+    private static final String ENDPOINT_3 = "http://backend3/api/ip/package/";
+
+    /**
+     * Test that idle instances are selected in turn.
+     */
+    @Test
+    public void rotatesBetweenTiedInstances() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LEAST_OUTSTANDING, 30);
+        Set<Backend> selected = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            selected.add(selector.select());
+        }
+        assertEquals(3, selected.size());
+    }
+
+    /**
+     * Test that the instance with the fewest calls in progress is selected.
+     */
+    @Test
+    public void selectsLeastOutstanding() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LEAST_OUTSTANDING, 30);
+        selector.callStarted(backend(selector, 0));
+        selector.callStarted(backend(selector, 2));
+        for (int i = 0; i < 3; i++) {
+            assertSame(backend(selector, 1), selector.select());
+        }
+    }
+
+    /**
+     * Test that an instance is ejected after consecutive failures and becomes eligible again after the ejection period.
+     */
+    @Test
+    public void ejectsAndRecoversFailingInstance() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LEAST_OUTSTANDING, 30);
+        AtomicLong now = new AtomicLong(System.nanoTime());
+        ReflectionTestUtils.setField(selector, "clock", (LongSupplier) now::get);
+        Backend failing = backend(selector, 0);
+        for (int i = 0; i < 3; i++) {
+            selector.callCompleted(failing, selector.callStarted(failing), false, true);
+        }
+        for (int i = 0; i < 6; i++) {
+            assertNotSame(failing, selector.select());
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+        for (int i = 0; i < 6; i++) {
+            assertNotSame(failing, selector.select());
+        }
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        Set<Backend> selected = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            selected.add(selector.select());
+        }
+        assertEquals(3, selected.size());
+    }
+
+    /**
+     * Test that a success resets the consecutive failure count.
+     */
+    @Test
+    public void successResetsFailures() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LEAST_OUTSTANDING, 30);
+        Backend backend = backend(selector, 0);
+        for (int i = 0; i < 5; i++) {
+            boolean success = (i == 2);
+            selector.callCompleted(backend, selector.callStarted(backend), success, true);
+        }
+        assertTrue(backend.isHealthy(System.nanoTime()));
+    }
+
+    /**
+     * Test that abandoned calls release the instance without counting as failures.
+     */
+    @Test
+    public void abandonedCallsAreNotFailures() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LEAST_OUTSTANDING, 30);
+        Backend backend = backend(selector, 0);
+        for (int i = 0; i < 5; i++) {
+            selector.callStarted(backend);
+            selector.callAbandoned(backend);
+        }
+        assertEquals(0, backend.getOutstandingRequests());
+        assertTrue(backend.isHealthy(System.nanoTime()));
+    }
+
+    /**
+     * Test that report URLs are matched to the instance that issued them.
+     */
+    @Test
+    public void matchesReportUrlsToInstances() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LEAST_OUTSTANDING, 30);
+        assertSame(backend(selector, 1), selector.forUrl("http://backend2:8002/api/ip/validation/123"));
+        assertSame(backend(selector, 2), selector.forUrl("https://backend3/api/ip/validation/123"));
+        assertNull(selector.forUrl("http://backend2:9999/api/ip/validation/123"));
+        assertNull(selector.forUrl("http://other:8001/api/ip/validation/123"));
+        assertNull(selector.forUrl("file://backend1:8001/etc/passwd"));
+        assertNull(selector.forUrl("not a url"));
+    }
+
+    /**
+     * Test that with latency weighting an instance without latency samples is not preferred over faster loaded ones.
+     */
+    @Test
+    public void weighsUnsampledInstancesByMeanLatency() {
+        BackendSelector selector = createSelector(BackendSelector.MODE__LATENCY_WEIGHTED, 30);
+        Backend fast = backend(selector, 0);
+        Backend slow = backend(selector, 1);
+        Backend unsampled = backend(selector, 2);
+        completeUpload(selector, fast, 100);
+        completeUpload(selector, slow, 300);
+        // The unsampled instance is scored with the mean latency (200ms) times its three calls in progress (plus one).
+        for (int i = 0; i < 3; i++) {
+            selector.callStarted(unsampled);
+        }
+        selector.callStarted(fast);
+        for (int i = 0; i < 3; i++) {
+            assertSame(fast, selector.select());
+        }
+        // Slow report downloads do not affect the selection.
+        selector.callStarted(fast);
+        selector.callCompleted(fast, System.nanoTime() - TimeUnit.SECONDS.toNanos(10), true, false);
+        assertSame(fast, selector.select());
+    }
+
+    /**
+     * Record a successful upload with the provided latency.
+     *
+     * @param selector The selector.
+     * @param backend The backend.
+     * @param latencyMillis The latency in milliseconds.
+     */
+    private void completeUpload(BackendSelector selector, Backend backend, long latencyMillis) {
+        selector.callStarted(backend);
+        selector.callCompleted(backend, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latencyMillis), true, true);
+    }
+
+    /**
+     * Get a configured backend.
+     *
+     * @param selector The selector.
+     * @param index The backend's index.
+     * @return The backend.
+     */
+    private Backend backend(BackendSelector selector, int index) {
+        return selector.getBackends().get(index);
+    }
+
+    /**
+     * Create a selector for three backends, ejecting them after three consecutive failures.
+     *
+     * @param mode The selection mode.
+     * @param ejectionSeconds The duration of ejections.
+     * @return The selector.
+     */
+    private BackendSelector createSelector(String mode, long ejectionSeconds) {
+        BackendSelector selector = new BackendSelector();
+        ReflectionTestUtils.setField(selector, "backendEndpoints", new String[] {ENDPOINT_1, ENDPOINT_2, ENDPOINT_3});
+        ReflectionTestUtils.setField(selector, "selectionMode", mode);
+        ReflectionTestUtils.setField(selector, "maxFailures", 3);
+        ReflectionTestUtils.setField(selector, "ejectionSeconds", ejectionSeconds);
+        selector.init();
+        return selector;
+    }
+
+}
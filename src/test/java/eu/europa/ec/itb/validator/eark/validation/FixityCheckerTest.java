@@ -0,0 +1,193 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the local verification of the checksums declared in an archive's METS files.
+ */
+public class FixityCheckerTest {
+
+    private static final String CONTENT = "Sample content";
+    private static final String METS_START = "<mets:mets xmlns:mets=\"http://www.loc.gov/METS/\" xmlns:xlink=\"http://www.w3.org/1999/xlink\"><mets:fileSec><mets:fileGrp>";
+    private static final String METS_END = "</mets:fileGrp></mets:fileSec></mets:mets>";
+
+    @TempDir
+    Path tempDir;
+
+    private FixityChecker checker;
+
+    /**
+     * Create the checker.
+     */
+    @BeforeEach
+    public void setUp() {
+        checker = new FixityChecker();
+        ReflectionTestUtils.setField(checker, "enabled", true);
+        ReflectionTestUtils.setField(checker, "parallelism", 2);
+        checker.init();
+    }
+
+    /**
+     * Shut down the checker's pool.
+     */
+    @AfterEach
+    public void tearDown() {
+        checker.destroy();
+    }
+
+    /**
+     * Test that matching checksums produce no errors, including for percent-encoded references.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void acceptsMatchingChecksums() throws Exception {
+        File archive = createArchive(
+                fileEntry("SHA-256", sha256(CONTENT), "data/file.txt") + fileEntry("SHA-256", sha256(CONTENT), "data/file%20with%20spaces.txt"),
+                "pkg/data/file.txt", "pkg/data/file with spaces.txt");
+        assertTrue(checker.check(archive, createContext()).isEmpty());
+    }
+
+    /**
+     * Test that a checksum mismatch is reported.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void reportsMismatch() throws Exception {
+        File archive = createArchive(fileEntry("SHA-256", sha256("Other content"), "data/file.txt"), "pkg/data/file.txt");
+        List<FixityError> errors = checker.check(archive, createContext());
+        assertEquals(1, errors.size());
+        assertEquals("pkg/data/file.txt", errors.get(0).getLocation());
+        assertTrue(errors.get(0).getMessage().contains("does not match"));
+    }
+
+    /**
+     * Test that a declared file missing from the archive is reported.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void reportsMissingFile() throws Exception {
+        File archive = createArchive(fileEntry("SHA-256", sha256(CONTENT), "data/missing.txt"), "pkg/data/file.txt");
+        List<FixityError> errors = checker.check(archive, createContext());
+        assertEquals(1, errors.size());
+        assertEquals("pkg/data/missing.txt", errors.get(0).getLocation());
+        assertTrue(errors.get(0).getMessage().contains("was not found"));
+    }
+
+    /**
+     * Test that references leading outside the archive are reported, even if they resolve to an existing file once
+     * normalised.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void reportsReferencesOutsideArchive() throws Exception {
+        File archive = createArchive(
+                fileEntry("SHA-256", sha256(CONTENT), "../../pkg/data/file.txt") + fileEntry("SHA-256", sha256(CONTENT), "../../../etc/passwd"),
+                "pkg/data/file.txt");
+        List<FixityError> errors = checker.check(archive, createContext());
+        assertEquals(2, errors.size());
+        for (FixityError error: errors) {
+            assertEquals("pkg/METS.xml", error.getLocation());
+            assertTrue(error.getMessage().contains("is not a relative path within the archive"));
+        }
+    }
+
+    /**
+     * Test that archives that are not ZIP files are skipped.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @Test
+    public void skipsArchivesThatAreNotZipFiles() throws Exception {
+        Path archive = tempDir.resolve("package.tar");
+        Files.writeString(archive, "Not a ZIP file");
+        assertTrue(checker.check(archive.toFile(), createContext()).isEmpty());
+    }
+
+    /**
+     * Create an archive with a METS file at pkg/METS.xml and the provided files (all with the same content).
+     *
+     * @param fileEntries The METS file entries to include in the fileSec.
+     * @param files The paths of the files to include.
+     * @return The archive.
+     * @throws IOException If the archive cannot be written.
+     */
+    private File createArchive(String fileEntries, String... files) throws IOException {
+        Path archive = tempDir.resolve("package.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive))) {
+            writeEntry(out, "pkg/METS.xml", METS_START + fileEntries + METS_END);
+            for (String file: files) {
+                writeEntry(out, file, CONTENT);
+            }
+        }
+        return archive.toFile();
+    }
+
+    /**
+     * Write an entry to a ZIP file.
+     *
+     * @param out The ZIP file's stream.
+     * @param name The entry's name.
+     * @param content The entry's content.
+     * @throws IOException If the entry cannot be written.
+     */
+    private void writeEntry(ZipOutputStream out, String name, String content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(content.getBytes(StandardCharsets.UTF_8));
+        out.closeEntry();
+    }
+
+    /**
+     * Create the METS fileSec entry for a file.
+     *
+     * @param checksumType The checksum type.
+     * @param checksum The checksum.
+     * @param href The file reference.
+     * @return The entry.
+     */
+    private String fileEntry(String checksumType, String checksum, String href) {
+        return "<mets:file ID=\"f\" CHECKSUMTYPE=\"" + checksumType + "\" CHECKSUM=\"" + checksum + "\">" +
+                "<mets:FLocat LOCTYPE=\"URL\" xlink:type=\"simple\" xlink:href=\"" + href + "\"/></mets:file>";
+    }
+
+    /**
+     * Calculate the SHA-256 checksum of the provided content.
+     *
+     * @param content The content.
+     * @return The checksum in upper case (as commonly declared in METS files).
+     * @throws Exception If the checksum cannot be calculated.
+     */
+    private String sha256(String content) throws Exception {
+        return HexFormat.of().withUpperCase().formatHex(MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return A new context for an upload.
+     */
+    private ValidationContext createContext() {
+        return new ValidationContext("upload", Duration.ofMinutes(1));
+    }
+
+}
@@ -0,0 +1,187 @@
+package eu.europa.ec.itb.validator.eark.validation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the handling of request deadlines by the validator.
+ */
+public class ValidatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Validator validator;
+    private BackendSelector backendSelector;
+    private CloseableHttpClient httpClient;
+    private ScheduledThreadPoolExecutor deadlineScheduler;
+    private HttpServer backend;
+    private ExecutorService backendExecutor;
+
+    /**
+     * Start a backend that never responds in time and create a validator targeting it.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @BeforeEach
+    public void setUp() throws Exception {
+        backendExecutor = Executors.newCachedThreadPool();
+        backend = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        backend.createContext("/", exchange -> {
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        backend.setExecutor(backendExecutor);
+        backend.start();
+        BackendSelector selector = new BackendSelector();
+        ReflectionTestUtils.setField(selector, "backendEndpoints", new String[] {"http://localhost:" + backend.getAddress().getPort() + "/api/ip/package/"});
+        ReflectionTestUtils.setField(selector, "selectionMode", BackendSelector.MODE__LEAST_OUTSTANDING);
+        ReflectionTestUtils.setField(selector, "maxFailures", 1);
+        ReflectionTestUtils.setField(selector, "ejectionSeconds", 30L);
+        selector.init();
+        backendSelector = spy(selector);
+        httpClient = HttpClients.createDefault();
+        deadlineScheduler = new ScheduledThreadPoolExecutor(1);
+        deadlineScheduler.setRemoveOnCancelPolicy(true);
+        validator = new Validator();
+        ReflectionTestUtils.setField(validator, "forceHttps", false);
+        ReflectionTestUtils.setField(validator, "timeoutSeconds", 300L);
+        ReflectionTestUtils.setField(validator, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(validator, "backendSelector", backendSelector);
+        ReflectionTestUtils.setField(validator, "httpClient", httpClient);
+        ReflectionTestUtils.setField(validator, "deadlineScheduler", deadlineScheduler);
+    }
+
+    /**
+     * Stop the backend and release the validator's resources.
+     *
+     * @throws Exception If an unexpected error occurs.
+     */
+    @AfterEach
+    public void tearDown() throws Exception {
+        backend.stop(0);
+        backendExecutor.shutdownNow();
+        deadlineScheduler.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * Test that requested timeouts are parsed and capped by the configured timeout.
+     */
+    @Test
+    public void createsContextWithRequestedTimeout() {
+        assertRemainingSeconds(10, validator.createContext("report", "10"));
+        assertRemainingSeconds(10, validator.createContext("report", " 10 "));
+        assertRemainingSeconds(300, validator.createContext("report", "1000"));
+        assertRemainingSeconds(300, validator.createContext("report", null));
+        assertRemainingSeconds(300, validator.createContext("report", " "));
+    }
+
+    /**
+     * Test that invalid timeouts are rejected.
+     */
+    @Test
+    public void rejectsInvalidTimeout() {
+        assertThrows(IllegalArgumentException.class, () -> validator.createContext("report", "0"));
+        assertThrows(IllegalArgumentException.class, () -> validator.createContext("report", "-5"));
+        assertThrows(IllegalArgumentException.class, () -> validator.createContext("report", "ten"));
+    }
+
+    /**
+     * Test that writing an archive stops once the deadline has passed, without consuming the rest of the stream.
+     */
+    @Test
+    public void stopsWritingArchiveAfterDeadline() {
+        AtomicLong bytesRead = new AtomicLong();
+        // An endless stream delivering a buffer every 10 ms.
+        InputStream slowStream = new InputStream() {
+            @Override
+            public int read() {
+                bytesRead.incrementAndGet();
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                bytesRead.addAndGet(length);
+                return length;
+            }
+        };
+        ValidationContext context = new ValidationContext("upload", Duration.ofMillis(200));
+        File archive = tempDir.resolve("archive.zip").toFile();
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> validator.writeArchive(slowStream, archive, context));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(bytesRead.get(), context.getArchiveSize());
+    }
+
+    /**
+     * Test that a backend call still in progress when the deadline passes is aborted and reported as such, without
+     * counting as a failure of the backend.
+     */
+    @Test
+    public void abortsBackendCallAfterDeadline() {
+        ValidationContext context = new ValidationContext("report", Duration.ofMillis(300));
+        String reportUrl = "http://localhost:" + backend.getAddress().getPort() + "/api/ip/validation/123";
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> validator.validate(reportUrl, context));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        Backend target = backendSelector.getBackends().get(0);
+        verify(backendSelector).callAbandoned(target);
+        verify(backendSelector, never()).callCompleted(any(), anyLong(), anyBoolean(), anyBoolean());
+        assertEquals(0, target.getOutstandingRequests());
+        assertTrue(target.isHealthy(System.nanoTime()));
+    }
+
+    /**
+     * Check that a context's remaining time corresponds to the expected timeout.
+     *
+     * @param expectedSeconds The expected timeout in seconds.
+     * @param context The context.
+     */
+    private void assertRemainingSeconds(long expectedSeconds, ValidationContext context) {
+        long remaining = context.getRemainingMillis();
+        assertTrue(remaining <= TimeUnit.SECONDS.toMillis(expectedSeconds), "Remaining time " + remaining + " ms exceeds " + expectedSeconds + " s");
+        assertTrue(remaining > TimeUnit.SECONDS.toMillis(expectedSeconds) - 1000, "Remaining time " + remaining + " ms is below " + expectedSeconds + " s");
+    }
+
+}